@@ -0,0 +1,95 @@
+package com.renpytool
+
+import android.os.Bundle
+import androidx.activity.ComponentActivity
+import androidx.activity.compose.BackHandler
+import androidx.activity.compose.setContent
+import androidx.activity.enableEdgeToEdge
+import androidx.activity.viewModels
+import androidx.compose.runtime.collectAsState
+import androidx.compose.runtime.getValue
+import com.renpytool.ui.ArchiveBrowserScreen
+import com.renpytool.ui.theme.RenpytoolTheme
+import com.renpytool.viewmodel.ArchiveBrowserViewModel
+
+/**
+ * Browse the contents of an RPA archive without extracting it
+ * Images and scripts can be previewed; only the entries shown are read from the archive
+ */
+class ArchiveBrowserActivity : ComponentActivity() {
+
+    companion object {
+        const val EXTRA_ARCHIVE_PATH = "archive_path"
+    }
+
+    private val viewModel: ArchiveBrowserViewModel by viewModels()
+    private var currentThemeMode: MainViewModel.ThemeMode? = null
+
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+
+        // Enable edge-to-edge display
+        enableEdgeToEdge()
+
+        val archivePath = intent.getStringExtra(EXTRA_ARCHIVE_PATH)
+        if (archivePath == null) {
+            finish()
+            return
+        }
+        viewModel.open(archivePath)
+        saveLastBrowsedArchive(archivePath)
+
+        // Store initial theme mode
+        currentThemeMode = ThemeUtils.getThemeMode(this)
+
+        setContent {
+            val themeMode = ThemeUtils.getThemeMode(this)
+            val darkTheme = ThemeUtils.shouldUseDarkTheme(themeMode)
+
+            RenpytoolTheme(darkTheme = darkTheme) {
+                val uiState by viewModel.uiState.collectAsState()
+
+                // Back leaves subdirectories before leaving the browser
+                BackHandler(enabled = uiState.currentPath.isNotEmpty()) {
+                    viewModel.navigateUp()
+                }
+
+                ArchiveBrowserScreen(
+                    uiState = uiState,
+                    onNodeClick = { node ->
+                        if (node.isDirectory) viewModel.navigateTo(node.path) else viewModel.showPreview(node)
+                    },
+                    onPathClick = { path -> viewModel.navigateTo(path) },
+                    onNavigationClick = {
+                        if (uiState.currentPath.isNotEmpty()) viewModel.navigateUp() else finish()
+                    },
+                    onDismissPreview = { viewModel.dismissPreview() },
+                    cachedThumbnail = viewModel::cachedThumbnail,
+                    loadThumbnail = viewModel::loadThumbnail
+                )
+            }
+        }
+    }
+
+    /**
+     * Remember the archive so the main screen can show it and the file picker can start next to it
+     */
+    private fun saveLastBrowsedArchive(archivePath: String) {
+        getSharedPreferences("RentoolPrefs", MODE_PRIVATE).edit()
+            .putString("last_rpa_browse_file", archivePath)
+            .apply()
+    }
+
+    override fun onResume() {
+        super.onResume()
+        checkThemeChange()
+    }
+
+    private fun checkThemeChange() {
+        val newThemeMode = ThemeUtils.getThemeMode(this)
+        if (currentThemeMode != null && currentThemeMode != newThemeMode) {
+            recreate()
+        }
+        currentThemeMode = newThemeMode
+    }
+}
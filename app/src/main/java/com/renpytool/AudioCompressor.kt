@@ -15,6 +15,8 @@ object AudioCompressor {
 
     private const val TAG = "AudioCompressor"
 
+    val AUDIO_EXTENSIONS = setOf("ogg", "mp3", "wav", "flac", "m4a", "aac", "opus")
+
     // Audio quality presets (bitrates)
     enum class AudioQuality(val bitrate: String) {
         HIGH("128k"),
@@ -34,7 +36,6 @@ object AudioCompressor {
      * Scan directory for audio files
      */
     fun scanAudioFiles(directory: File): List<File> {
-        val audioExtensions = setOf("ogg", "mp3", "wav", "flac", "m4a", "aac", "opus")
         val files = mutableListOf<File>()
 
         Log.i(TAG, "Scanning for audio files in: ${directory.absolutePath}")
@@ -42,7 +43,7 @@ object AudioCompressor {
         try {
             directory.walkTopDown()
                 .filter { it.isFile }
-                .filter { it.extension.lowercase() in audioExtensions }
+                .filter { it.extension.lowercase() in AUDIO_EXTENSIONS }
                 .forEach { file ->
                     files.add(file)
                 }
@@ -107,13 +107,19 @@ class FilePickerActivity : ComponentActivity() {
                 }
                 else -> {
                     // File selected
-                    // Allow in FILE mode OR in compress mode for APK files
+                    // Allow in FILE mode OR in compress mode for APK and RPA files
                     if (uiState.mode == FilePickerUiState.MODE_FILE) {
                         selectFile(item.file)
                     } else if (uiState.mode == FilePickerUiState.MODE_DIRECTORY &&
                                uiState.fileFilter == "compress_source" &&
-                               item.file.name.lowercase().endsWith(".apk")) {
-                        // Special case: allow APK selection in compress mode
+                               (item.file.name.lowercase().endsWith(".apk") ||
+                                item.file.name.lowercase().endsWith(".rpa"))) {
+                        // Special case: allow APK and RPA selection in compress mode
+                        selectFile(item.file)
+                    } else if (uiState.mode == FilePickerUiState.MODE_DIRECTORY &&
+                               uiState.fileFilter == "decompile_source" &&
+                               item.file.name.lowercase().endsWith(".rpa")) {
+                        // Special case: allow RPA selection in decompile mode
                         selectFile(item.file)
                     }
                 }
@@ -157,6 +163,7 @@ class FilePickerActivity : ComponentActivity() {
     private fun selectFile(file: java.io.File) {
         // Check if we should open the editor instead of returning
         val openEditor = intent.getBooleanExtra("OPEN_EDITOR", false)
+        val openBrowser = intent.getBooleanExtra("OPEN_BROWSER", false)
 
         if (openEditor && file.name.lowercase().endsWith(".rpy")) {
             // Open .rpy file in editor
@@ -164,6 +171,12 @@ class FilePickerActivity : ComponentActivity() {
             editorIntent.putExtra(RpyEditorActivityNew.EXTRA_FILE_PATH, file.absolutePath)
             startActivity(editorIntent)
             finish()
+        } else if (openBrowser && file.name.lowercase().endsWith(".rpa")) {
+            // Open .rpa file in archive browser
+            val browserIntent = Intent(this, ArchiveBrowserActivity::class.java)
+            browserIntent.putExtra(ArchiveBrowserActivity.EXTRA_ARCHIVE_PATH, file.absolutePath)
+            startActivity(browserIntent)
+            finish()
         } else {
             // Return selected file to calling activity
             val resultIntent = Intent()
@@ -10,8 +10,10 @@ import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.sync.Semaphore
 import kotlinx.coroutines.sync.withPermit
 import kotlinx.coroutines.withContext
+import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.FileOutputStream
+import java.io.OutputStream
 
 /**
  * Handles image compression using Android's native Bitmap APIs with WebP support
@@ -21,7 +23,7 @@ class ImageCompressor(private val context: Context) {
 
     companion object {
         private const val TAG = "ImageCompressor"
-        private val SUPPORTED_FORMATS = setOf("png", "jpg", "jpeg", "bmp", "webp")
+        val SUPPORTED_FORMATS = setOf("png", "jpg", "jpeg", "bmp", "webp")
     }
 
     data class CompressResult(
@@ -204,13 +206,6 @@ class ImageCompressor(private val context: Context) {
                 return CompressResult(false, originalSize, 0, "Failed to decode image")
             }
 
-            // Determine output format based on settings
-            val format = if (settings.imageLossless) {
-                Bitmap.CompressFormat.WEBP_LOSSLESS
-            } else {
-                Bitmap.CompressFormat.WEBP_LOSSY
-            }
-
             // Prepare output file with original extension preserved
             val relativePath = imageFile.relativeTo(sourceDir).path
             val outputFile = File(outputDir, relativePath)
@@ -224,19 +219,7 @@ class ImageCompressor(private val context: Context) {
 
             // Compress to WebP
             FileOutputStream(tempFile).use { out ->
-                val quality = if (settings.imageLossless) {
-                    // For lossless, quality controls compression effort (speed vs file size)
-                    // Map imageMethod (0=fast, 4=average, 6=slow) to quality
-                    when {
-                        settings.imageMethod <= 2 -> 80  // Fast: less compression, faster
-                        settings.imageMethod in 3..5 -> 90  // Average: balanced
-                        else -> 100  // Slow: best compression, slower
-                    }
-                } else {
-                    settings.imageQuality  // For lossy, quality 1-100
-                }
-
-                val success = inputBitmap.compress(format, quality, out)
+                val success = compressBitmap(inputBitmap, settings, out)
                 if (!success) {
                     Log.w(TAG, "Bitmap.compress() returned false for: ${imageFile.name}")
                     return CompressResult(false, originalSize, 0, "Compression failed")
@@ -273,6 +256,85 @@ class ImageCompressor(private val context: Context) {
         }
     }
 
+    /**
+     * Compress an encoded image held in memory to WebP, for images read straight from archives
+     * Returns null if the image cannot be decoded or compressed
+     */
+    fun compressImageData(data: ByteArray, name: String, settings: CompressionSettings): ByteArray? {
+        var inputBitmap: Bitmap? = null
+        try {
+            inputBitmap = decodeSafely(data)
+            if (inputBitmap == null) {
+                Log.w(TAG, "Failed to decode: $name")
+                return null
+            }
+
+            val out = ByteArrayOutputStream(data.size / 2)
+            if (!compressBitmap(inputBitmap, settings, out) || out.size() == 0) {
+                Log.w(TAG, "Bitmap.compress() failed for: $name")
+                return null
+            }
+            return out.toByteArray()
+
+        } catch (e: Exception) {
+            Log.e(TAG, "Error compressing $name", e)
+            return null
+        } finally {
+            inputBitmap?.recycle()
+        }
+    }
+
+    /**
+     * Encode a bitmap as WebP according to the settings
+     */
+    private fun compressBitmap(bitmap: Bitmap, settings: CompressionSettings, out: OutputStream): Boolean {
+        // Determine output format based on settings
+        val format = if (settings.imageLossless) {
+            Bitmap.CompressFormat.WEBP_LOSSLESS
+        } else {
+            Bitmap.CompressFormat.WEBP_LOSSY
+        }
+
+        val quality = if (settings.imageLossless) {
+            // For lossless, quality controls compression effort (speed vs file size)
+            // Map imageMethod (0=fast, 4=average, 6=slow) to quality
+            when {
+                settings.imageMethod <= 2 -> 80  // Fast: less compression, faster
+                settings.imageMethod in 3..5 -> 90  // Average: balanced
+                else -> 100  // Slow: best compression, slower
+            }
+        } else {
+            settings.imageQuality  // For lossy, quality 1-100
+        }
+
+        return bitmap.compress(format, quality, out)
+    }
+
+    /**
+     * Decode an in-memory image safely with proper bitmap configuration
+     */
+    private fun decodeSafely(data: ByteArray): Bitmap? {
+        try {
+            val options = BitmapFactory.Options().apply {
+                inJustDecodeBounds = true
+            }
+            BitmapFactory.decodeByteArray(data, 0, data.size, options)
+
+            options.inJustDecodeBounds = false
+            options.inPreferredConfig = if (options.outMimeType == "image/jpeg") {
+                Bitmap.Config.RGB_565  // JPEG never has transparency
+            } else {
+                Bitmap.Config.ARGB_8888  // Might have transparency (PNG, WebP, BMP)
+            }
+
+            return BitmapFactory.decodeByteArray(data, 0, data.size, options)
+
+        } catch (e: Exception) {
+            Log.e(TAG, "Error decoding image data", e)
+            return null
+        }
+    }
+
     /**
      * Decode image file safely with proper bitmap configuration
      */
@@ -31,9 +31,11 @@ import com.chaquo.python.Python
 import com.chaquo.python.android.AndroidPlatform
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import com.google.android.material.textfield.TextInputEditText
+import com.google.android.material.textfield.TextInputLayout
 import com.renpytool.keystore.KeystoreInfo
 import com.renpytool.keystore.KeystoreManager
 import com.renpytool.keystore.SigningOption
+import com.renpytool.rpa.RpaBackend
 import com.renpytool.ui.CompressionSettingsDialog
 import com.renpytool.ui.DecompileOptionsDialogContent
 import com.renpytool.ui.KeystoreSelectionDialog
@@ -55,6 +57,9 @@ class MainActivity : ComponentActivity() {
 
     // File picker launchers
     private lateinit var extractRpaPickerLauncher: ActivityResultLauncher<Intent>
+    private lateinit var verifyRpaPickerLauncher: ActivityResultLauncher<Intent>
+    private lateinit var patchBasePickerLauncher: ActivityResultLauncher<Intent>
+    private lateinit var patchModifiedPickerLauncher: ActivityResultLauncher<Intent>
     private lateinit var extractDirPickerLauncher: ActivityResultLauncher<Intent>
     private lateinit var createSourcePickerLauncher: ActivityResultLauncher<Intent>
     private lateinit var decompileDirPickerLauncher: ActivityResultLauncher<Intent>
@@ -73,6 +78,7 @@ class MainActivity : ComponentActivity() {
     private var selectedSourcePaths: ArrayList<String>? = null  // For batch creation
     private var selectedCompressSourcePath: String? = null
     private var selectedCompressOutputPath: String? = null
+    private var selectedPatchBasePath: String? = null
 
     // Keystore management state
     private var selectedSigningOption: SigningOption? = null
@@ -130,6 +136,9 @@ class MainActivity : ComponentActivity() {
         val decompileStatus by viewModel.decompileStatus.collectAsState()
         val editStatus by viewModel.editStatus.collectAsState()
         val compressStatus by viewModel.compressStatus.collectAsState()
+        val verifyStatus by viewModel.verifyStatus.collectAsState()
+        val patchStatus by viewModel.patchStatus.collectAsState()
+        val browseStatus by viewModel.browseStatus.collectAsState()
         val cardsEnabled by viewModel.cardsEnabled.collectAsState()
 
         MainScreenContent(
@@ -138,12 +147,18 @@ class MainActivity : ComponentActivity() {
             decompileStatus = decompileStatus,
             editStatus = editStatus,
             compressStatus = compressStatus,
+            verifyStatus = verifyStatus,
+            patchStatus = patchStatus,
+            browseStatus = browseStatus,
             cardsEnabled = cardsEnabled,
             onExtractClick = { startExtractFlow() },
             onCreateClick = { startCreateFlow() },
             onDecompileClick = { startDecompileFlow() },
             onEditClick = { startEditRpyFlow() },
             onCompressClick = { startCompressFlow() },
+            onVerifyClick = { startVerifyFlow() },
+            onPatchClick = { startPatchFlow() },
+            onBrowseClick = { startBrowseFlow() },
             onSettingsClick = { startSettingsActivity() },
             modifier = Modifier.fillMaxSize()
         )
@@ -275,6 +290,43 @@ class MainActivity : ComponentActivity() {
             }
         }
 
+        // Verify: Pick RPA file(s)
+        verifyRpaPickerLauncher = registerForActivityResult(
+            ActivityResultContracts.StartActivityForResult()
+        ) { result ->
+            if (result.resultCode == Activity.RESULT_OK && result.data != null) {
+                val paths = result.data?.getStringArrayListExtra(FilePickerActivity.EXTRA_SELECTED_PATHS)
+                    ?.takeIf { it.isNotEmpty() }
+                    ?: result.data?.getStringExtra(FilePickerActivity.EXTRA_SELECTED_PATH)?.let { arrayListOf(it) }
+                paths?.let { showVerifyDialog(it) }
+            }
+        }
+
+        // Patch: Pick base RPA file
+        patchBasePickerLauncher = registerForActivityResult(
+            ActivityResultContracts.StartActivityForResult()
+        ) { result ->
+            if (result.resultCode == Activity.RESULT_OK && result.data != null) {
+                selectedPatchBasePath = result.data?.getStringExtra(FilePickerActivity.EXTRA_SELECTED_PATH)
+                    ?: result.data?.getStringArrayListExtra(FilePickerActivity.EXTRA_SELECTED_PATHS)?.firstOrNull()
+                selectedPatchBasePath?.let { showPatchSourceDialog() }
+            }
+        }
+
+        // Patch: Pick modified game folder or RPA file
+        patchModifiedPickerLauncher = registerForActivityResult(
+            ActivityResultContracts.StartActivityForResult()
+        ) { result ->
+            if (result.resultCode == Activity.RESULT_OK && result.data != null) {
+                val modifiedPath = result.data?.getStringExtra(FilePickerActivity.EXTRA_SELECTED_PATH)
+                    ?: result.data?.getStringArrayListExtra(FilePickerActivity.EXTRA_SELECTED_PATHS)?.firstOrNull()
+                val basePath = selectedPatchBasePath
+                if (modifiedPath != null && basePath != null) {
+                    startPatchCreation(basePath, modifiedPath)
+                }
+            }
+        }
+
         // Extract: Pick extraction directory
         extractDirPickerLauncher = registerForActivityResult(
             ActivityResultContracts.StartActivityForResult()
@@ -282,17 +334,7 @@ class MainActivity : ComponentActivity() {
             if (result.resultCode == Activity.RESULT_OK && result.data != null) {
                 val extractPath = result.data?.getStringExtra(FilePickerActivity.EXTRA_SELECTED_PATH)
                 extractPath?.let { path ->
-                    // Check if batch or single extraction
-                    if (selectedRpaPaths != null && selectedRpaPaths!!.isNotEmpty()) {
-                        // Batch extraction - delegate to ViewModel (no validation for batch yet)
-                        launchProgressActivityForBatchExtract(path, selectedRpaPaths!!)
-                        viewModel.performBatchExtraction(selectedRpaPaths!!, path)
-                    } else {
-                        // Single extraction - validate storage first
-                        selectedRpaPath?.let { rpaPath ->
-                            validateAndExtract(rpaPath, path)
-                        }
-                    }
+                    showExtractFilterDialog(path)
                 }
             }
         }
@@ -336,7 +378,7 @@ class MainActivity : ComponentActivity() {
                     // Show decompile options dialog
                     showDecompileOptionsDialog(sourcePath)
                 } else {
-                    Toast.makeText(this, "No directory selected", Toast.LENGTH_SHORT).show()
+                    Toast.makeText(this, "No folder or archive selected", Toast.LENGTH_SHORT).show()
                 }
             }
         }
@@ -369,23 +411,28 @@ class MainActivity : ComponentActivity() {
             if (result.resultCode == Activity.RESULT_OK && result.data != null) {
                 selectedCompressSourcePath = result.data?.getStringExtra(FilePickerActivity.EXTRA_SELECTED_PATH)
 
-                // If APK file selected, set output to "{name}-compressed.apk" in parent directory
+                // If APK or RPA file selected, set output to "{name}-compressed.apk/.rpa" in parent directory
                 // If directory selected, use same folder (overwrite originals)
                 selectedCompressOutputPath = selectedCompressSourcePath?.let { sourcePath ->
                     val sourceFile = File(sourcePath)
-                    if (sourceFile.isFile && sourceFile.name.lowercase().endsWith(".apk")) {
-                        // APK file: output in parent directory with "-compressed" suffix
+                    val extension = sourceFile.extension.lowercase()
+                    if (sourceFile.isFile && (extension == "apk" || extension == "rpa")) {
+                        // APK or RPA file: output in parent directory with "-compressed" suffix
                         val nameWithoutExt = sourceFile.nameWithoutExtension
                         val parentDir = sourceFile.parentFile
-                        File(parentDir, "$nameWithoutExt-compressed.apk").absolutePath
+                        File(parentDir, "$nameWithoutExt-compressed.$extension").absolutePath
                     } else {
                         // Directory: use same location
                         sourcePath
                     }
                 }
 
-                // Show compression settings dialog
-                showCompressionSettingsDialog()
+                // Archives ask where the result goes first
+                if (selectedCompressSourcePath?.lowercase()?.endsWith(".rpa") == true) {
+                    showRpaCompressOutputDialog()
+                } else {
+                    showCompressionSettingsDialog()
+                }
             }
         }
 
@@ -455,6 +502,99 @@ class MainActivity : ComponentActivity() {
         extractRpaPickerLauncher.launch(intent)
     }
 
+    private fun startVerifyFlow() {
+        val intent = Intent(this, FilePickerActivity::class.java).apply {
+            putExtra(FilePickerActivity.EXTRA_MODE, FilePickerActivity.MODE_FILE)
+            putExtra(FilePickerActivity.EXTRA_FILE_FILTER, ".rpa")
+            putExtra(FilePickerActivity.EXTRA_TITLE, "Select RPA File to Verify")
+        }
+        verifyRpaPickerLauncher.launch(intent)
+    }
+
+    /**
+     * Ask whether to record a checksum manifest next to each archive that verifies cleanly
+     */
+    private fun showVerifyDialog(rpaPaths: ArrayList<String>) {
+        MaterialAlertDialogBuilder(this)
+            .setTitle("Verify Archive")
+            .setMessage(
+                "Checks every file in the index against the archive without extracting it.\n\n" +
+                "Saving a manifest records a checksum of each file, so later verifications " +
+                "also detect changed contents."
+            )
+            .setPositiveButton("Verify") { _, _ ->
+                startVerification(rpaPaths, saveManifest = false)
+            }
+            .setNeutralButton("Verify & Save Manifest") { _, _ ->
+                startVerification(rpaPaths, saveManifest = true)
+            }
+            .setNegativeButton("Cancel", null)
+            .show()
+    }
+
+    private fun startVerification(rpaPaths: ArrayList<String>, saveManifest: Boolean) {
+        val intent = Intent(this, ProgressActivity::class.java).apply {
+            putExtra("OPERATION_TYPE", "verify")
+            if (rpaPaths.size > 1) {
+                putExtra("BATCH_MODE", true)
+                putExtra("BATCH_TOTAL", rpaPaths.size)
+                putExtra("BATCH_FILES", ArrayList(rpaPaths.map { File(it).name }))
+            }
+        }
+        startActivity(intent)
+        viewModel.performVerification(rpaPaths, saveManifest)
+    }
+
+    private fun startPatchFlow() {
+        val intent = Intent(this, FilePickerActivity::class.java).apply {
+            putExtra(FilePickerActivity.EXTRA_MODE, FilePickerActivity.MODE_FILE)
+            putExtra(FilePickerActivity.EXTRA_FILE_FILTER, ".rpa")
+            putExtra(FilePickerActivity.EXTRA_TITLE, "Select Base RPA File")
+        }
+        patchBasePickerLauncher.launch(intent)
+    }
+
+    /**
+     * Ask whether the modified version is an unpacked game folder or a rebuilt archive
+     */
+    private fun showPatchSourceDialog() {
+        val baseName = selectedPatchBasePath?.let { File(it).nameWithoutExtension } ?: return
+        MaterialAlertDialogBuilder(this)
+            .setTitle("Create Patch")
+            .setMessage(
+                "Writes ${baseName}_patch.rpa next to the base archive with only the files that were " +
+                "added or changed. Ren'Py loads it after the base, so its files take precedence.\n\n" +
+                "Files deleted from the modified version stay in the base archive.\n\n" +
+                "Where is the modified version?"
+            )
+            .setPositiveButton("Folder") { _, _ ->
+                launchPatchModifiedPicker(FilePickerActivity.MODE_DIRECTORY, null, "Select Modified Game Folder")
+            }
+            .setNeutralButton("Archive") { _, _ ->
+                launchPatchModifiedPicker(FilePickerActivity.MODE_FILE, ".rpa", "Select Modified RPA File")
+            }
+            .setNegativeButton("Cancel", null)
+            .show()
+    }
+
+    private fun launchPatchModifiedPicker(mode: Int, fileFilter: String?, title: String) {
+        val intent = Intent(this, FilePickerActivity::class.java).apply {
+            putExtra(FilePickerActivity.EXTRA_MODE, mode)
+            fileFilter?.let { putExtra(FilePickerActivity.EXTRA_FILE_FILTER, it) }
+            putExtra(FilePickerActivity.EXTRA_TITLE, title)
+            selectedPatchBasePath?.let { File(it).parent }?.let { putExtra(FilePickerActivity.EXTRA_START_DIR, it) }
+        }
+        patchModifiedPickerLauncher.launch(intent)
+    }
+
+    private fun startPatchCreation(basePath: String, modifiedPath: String) {
+        val intent = Intent(this, ProgressActivity::class.java).apply {
+            putExtra("OPERATION_TYPE", "patch")
+        }
+        startActivity(intent)
+        viewModel.performPatchCreation(basePath, modifiedPath)
+    }
+
     private fun launchExtractDirectoryPicker() {
         val intent = Intent(this, FilePickerActivity::class.java).apply {
             putExtra(FilePickerActivity.EXTRA_MODE, FilePickerActivity.MODE_DIRECTORY)
@@ -512,22 +652,10 @@ class MainActivity : ComponentActivity() {
                 if (fileName.isNotEmpty()) {
                     val outputPath = "$defaultOutputDir/$fileName"
 
-                    // Check if batch or single creation - delegate to ViewModel
-                    if (selectedSourcePaths != null && selectedSourcePaths!!.isNotEmpty()) {
-                        // Batch creation - launch with batch info
-                        val sourceNames = ArrayList(selectedSourcePaths!!.map { File(it).name })
-                        val intent = Intent(this, ProgressActivity::class.java).apply {
-                            putExtra("BATCH_MODE", true)
-                            putExtra("BATCH_TOTAL", selectedSourcePaths!!.size)
-                            putExtra("BATCH_FILES", sourceNames)
-                        }
-                        startActivity(intent)
-                        viewModel.performBatchCreation(selectedSourcePaths!!, outputPath)
+                    if (File(outputPath).exists()) {
+                        showArchiveExistsDialog(outputPath)
                     } else {
-                        // Single creation
-                        val intent = Intent(this, ProgressActivity::class.java)
-                        startActivity(intent)
-                        selectedSourcePath?.let { viewModel.performCreation(it, outputPath) }
+                        startCreation(outputPath, update = false)
                     }
                 } else {
                     Toast.makeText(this, "Please enter a file name", Toast.LENGTH_SHORT).show()
@@ -537,11 +665,54 @@ class MainActivity : ComponentActivity() {
             .show()
     }
 
+    /**
+     * Ask whether an existing output archive should be updated in place or overwritten
+     */
+    private fun showArchiveExistsDialog(outputPath: String) {
+        MaterialAlertDialogBuilder(this)
+            .setTitle("Archive Already Exists")
+            .setMessage(
+                "${File(outputPath).name} already exists.\n\n" +
+                "Update adds the selected files to it, replacing files with the same name, " +
+                "without rewriting the rest of the archive.\n\n" +
+                "Overwrite creates a new archive from the selected files only."
+            )
+            .setPositiveButton("Update") { _, _ ->
+                startCreation(outputPath, update = true)
+            }
+            .setNeutralButton("Overwrite") { _, _ ->
+                startCreation(outputPath, update = false)
+            }
+            .setNegativeButton("Cancel", null)
+            .show()
+    }
+
+    private fun startCreation(outputPath: String, update: Boolean) {
+        // Check if batch or single creation - delegate to ViewModel
+        if (selectedSourcePaths != null && selectedSourcePaths!!.isNotEmpty()) {
+            // Batch creation - launch with batch info
+            val sourceNames = ArrayList(selectedSourcePaths!!.map { File(it).name })
+            val intent = Intent(this, ProgressActivity::class.java).apply {
+                putExtra("BATCH_MODE", true)
+                putExtra("BATCH_TOTAL", selectedSourcePaths!!.size)
+                putExtra("BATCH_FILES", sourceNames)
+            }
+            startActivity(intent)
+            viewModel.performBatchCreation(selectedSourcePaths!!, outputPath, update)
+        } else {
+            // Single creation
+            val intent = Intent(this, ProgressActivity::class.java)
+            startActivity(intent)
+            selectedSourcePath?.let { viewModel.performCreation(it, outputPath, update) }
+        }
+    }
+
     private fun startDecompileFlow() {
         // Launch file picker for directory containing .rpyc files
         val intent = Intent(this, FilePickerActivity::class.java).apply {
             putExtra(FilePickerActivity.EXTRA_MODE, FilePickerActivity.MODE_DIRECTORY)
-            putExtra(FilePickerActivity.EXTRA_TITLE, "Select Folder with RPYC Files")
+            putExtra(FilePickerActivity.EXTRA_FILE_FILTER, "decompile_source")
+            putExtra(FilePickerActivity.EXTRA_TITLE, "Select Folder with RPYC Files or RPA")
         }
         decompileDirPickerLauncher.launch(intent)
     }
@@ -621,26 +792,69 @@ class MainActivity : ComponentActivity() {
         return String.format("%.2f GB", gb)
     }
 
+    /**
+     * Ask which files to extract; a blank filter extracts everything
+     */
+    private fun showExtractFilterDialog(extractPath: String) {
+        val dialogView = layoutInflater.inflate(R.layout.dialog_input, null)
+        val inputLayout = dialogView.findViewById<TextInputLayout>(R.id.textInputLayout)
+        val etFilter = dialogView.findViewById<TextInputEditText>(R.id.editText)
+        inputLayout.hint = "Filter (optional)"
+        etFilter.setText(getSharedPreferences("RentoolPrefs", MODE_PRIVATE).getString("last_extract_filter", ""))
+
+        MaterialAlertDialogBuilder(this)
+            .setTitle("Files to Extract")
+            .setMessage(
+                "Leave empty to extract everything, or combine:\n" +
+                "*.rpyc  gui/**  ext:png,jpg  min:10K  max:5M"
+            )
+            .setView(dialogView)
+            .setPositiveButton("Extract") { _, _ ->
+                val filter = etFilter.text.toString().trim()
+                getSharedPreferences("RentoolPrefs", MODE_PRIVATE).edit()
+                    .putString("last_extract_filter", filter).apply()
+                startExtraction(extractPath, filter)
+            }
+            .setNegativeButton("Cancel", null)
+            .show()
+    }
+
+    private fun startExtraction(extractPath: String, filter: String) {
+        // Check if batch or single extraction
+        if (selectedRpaPaths != null && selectedRpaPaths!!.isNotEmpty()) {
+            // Batch extraction - delegate to ViewModel (no validation for batch yet)
+            launchProgressActivityForBatchExtract(extractPath, selectedRpaPaths!!)
+            viewModel.performBatchExtraction(selectedRpaPaths!!, extractPath, filter)
+        } else {
+            // Single extraction - validate storage first
+            selectedRpaPath?.let { rpaPath ->
+                validateAndExtract(rpaPath, extractPath, filter)
+            }
+        }
+    }
+
     /**
      * Validate storage before extraction and show warnings/errors
+     * Sizes are those of the files selected by filter
      */
-    private fun validateAndExtract(rpaPath: String, extractPath: String) {
+    private fun validateAndExtract(rpaPath: String, extractPath: String, filter: String = "") {
         lifecycleScope.launch {
             try {
-                // Get archive info from Python
-                val python = Python.getInstance()
-                val rpaModule = python.getModule("rpa_wrapper")
-                val result = rpaModule.callAttr("get_extraction_info", rpaPath)
-
-                val success = result.callAttr("__getitem__", "success").toBoolean()
-                if (!success) {
-                    val errorMsg = result.callAttr("__getitem__", "message").toString()
-                    Toast.makeText(this@MainActivity, "Error: $errorMsg", Toast.LENGTH_LONG).show()
+                // Get archive info for the selected files
+                val info = RpaBackend(this@MainActivity).getExtractionInfo(rpaPath, filter)
+
+                if (!info.success) {
+                    Toast.makeText(this@MainActivity, "Error: ${info.message}", Toast.LENGTH_LONG).show()
                     return@launch
                 }
 
-                val totalSize = result.callAttr("__getitem__", "total_size").toLong()
-                val fileCount = result.callAttr("__getitem__", "file_count").toInt()
+                if (info.fileCount == 0) {
+                    Toast.makeText(this@MainActivity, "No files match the filter", Toast.LENGTH_LONG).show()
+                    return@launch
+                }
+
+                val totalSize = info.totalSize
+                val fileCount = info.fileCount
                 val archiveSize = java.io.File(rpaPath).length()
 
                 // Check available storage
@@ -679,14 +893,14 @@ class MainActivity : ComponentActivity() {
                         .setPositiveButton("Continue") { _, _ ->
                             // Proceed with extraction
                             launchProgressActivityForExtract(extractPath)
-                            viewModel.performExtraction(rpaPath, extractPath)
+                            viewModel.performExtraction(rpaPath, extractPath, filter)
                         }
                         .setNegativeButton("Cancel", null)
                         .show()
                 } else {
                     // Normal extraction - proceed immediately
                     launchProgressActivityForExtract(extractPath)
-                    viewModel.performExtraction(rpaPath, extractPath)
+                    viewModel.performExtraction(rpaPath, extractPath, filter)
                 }
 
             } catch (e: Exception) {
@@ -794,12 +1008,30 @@ class MainActivity : ComponentActivity() {
         startActivity(intent)
     }
 
+    private fun startBrowseFlow() {
+        // Launch file picker to browse for .rpa files, opening the archive browser directly
+        val intent = Intent(this, FilePickerActivity::class.java).apply {
+            putExtra(FilePickerActivity.EXTRA_MODE, FilePickerActivity.MODE_FILE)
+            putExtra(FilePickerActivity.EXTRA_FILE_FILTER, ".rpa")
+            putExtra(FilePickerActivity.EXTRA_TITLE, "Select RPA File to Browse")
+            putExtra("OPEN_BROWSER", true)
+
+            // Restore last folder location if available
+            val prefs = getSharedPreferences("RentoolPrefs", MODE_PRIVATE)
+            prefs.getString("last_rpa_browse_file", null)?.let { lastArchive ->
+                File(lastArchive).parent?.let { putExtra(FilePickerActivity.EXTRA_START_DIR, it) }
+            }
+        }
+
+        startActivity(intent)
+    }
+
     private fun startCompressFlow() {
-        // Launch file picker for game directory or APK file
+        // Launch file picker for game directory, APK or RPA file
         val intent = Intent(this, FilePickerActivity::class.java).apply {
             putExtra(FilePickerActivity.EXTRA_MODE, FilePickerActivity.MODE_DIRECTORY)
             putExtra(FilePickerActivity.EXTRA_FILE_FILTER, "compress_source")
-            putExtra(FilePickerActivity.EXTRA_TITLE, "Select Game Folder or APK")
+            putExtra(FilePickerActivity.EXTRA_TITLE, "Select Game Folder, APK or RPA")
         }
         compressSourcePickerLauncher.launch(intent)
     }
@@ -812,6 +1044,34 @@ class MainActivity : ComponentActivity() {
         compressOutputPickerLauncher.launch(intent)
     }
 
+    /**
+     * Ask whether a compressed archive replaces the original
+     * Ren'Py loads the archive whose name sorts last, so it keeps using the original
+     * over a "-compressed" copy until that copy takes the original's name.
+     */
+    private fun showRpaCompressOutputDialog() {
+        val sourceFile = selectedCompressSourcePath?.let { File(it) } ?: return
+        val copyName = "${sourceFile.nameWithoutExtension}-compressed.rpa"
+        MaterialAlertDialogBuilder(this)
+            .setTitle("Compress Archive")
+            .setMessage(
+                "Replacing ${sourceFile.name} lets the game use the compressed files. " +
+                "The original is only replaced once compression has finished.\n\n" +
+                "Keeping both saves the result as $copyName, which the game ignores " +
+                "until it is renamed to ${sourceFile.name}."
+            )
+            .setPositiveButton("Replace Original") { _, _ ->
+                selectedCompressOutputPath = sourceFile.absolutePath
+                showCompressionSettingsDialog()
+            }
+            .setNeutralButton("Keep Both") { _, _ ->
+                selectedCompressOutputPath = File(sourceFile.parentFile, copyName).absolutePath
+                showCompressionSettingsDialog()
+            }
+            .setNegativeButton("Cancel", null)
+            .show()
+    }
+
     private fun showCompressionSettingsDialog() {
         val sourcePath = selectedCompressSourcePath
         val outputPath = selectedCompressOutputPath
@@ -1074,7 +1334,8 @@ class MainActivity : ComponentActivity() {
         super.onResume()
         // Recreate activity if theme changed while in settings
         checkThemeChange()
-        // Update edit status when returning from editor
+        // Update edit and browse status when returning from editor or archive browser
         viewModel.updateEditStatus()
+        viewModel.updateBrowseStatus()
     }
 }
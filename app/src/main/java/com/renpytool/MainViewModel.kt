@@ -10,6 +10,8 @@ import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.viewModelScope
 import com.chaquo.python.PyObject
 import com.chaquo.python.Python
+import com.renpytool.rpa.RpaBackend
+import com.renpytool.rpa.RpaIndexCache
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.delay
@@ -19,8 +21,6 @@ import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import java.io.File
-import java.io.FileInputStream
-import java.io.FileOutputStream
 
 /**
  * ViewModel for MainActivity
@@ -47,8 +47,15 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
 
     // Python modules
     private val python: Python = Python.getInstance()
-    private val rpaModule: PyObject = python.getModule("rpa_wrapper")
-    private val decompileModule: PyObject = python.getModule("decompile_wrapper")
+    private val rpaModule: PyObject = python.getModule("rpa_wrapper").also {
+        it.callAttr("set_cache_dir", RpaIndexCache.directory(context).absolutePath)
+    }
+    private val decompileModule: PyObject = python.getModule("decompile_wrapper").also {
+        it.callAttr("set_cache_dir", File(context.cacheDir, "decompile_manifest").absolutePath)
+    }
+
+    // RPA reader (JVM with Python fallback)
+    private val rpaBackend = RpaBackend(context)
 
     // State flows for card statuses
     private val _extractStatus = MutableStateFlow("No files extracted yet")
@@ -66,6 +73,15 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
     private val _compressStatus = MutableStateFlow("No games compressed yet")
     val compressStatus: StateFlow<String> = _compressStatus.asStateFlow()
 
+    private val _browseStatus = MutableStateFlow("No archives browsed yet")
+    val browseStatus: StateFlow<String> = _browseStatus.asStateFlow()
+
+    private val _verifyStatus = MutableStateFlow("No archives verified yet")
+    val verifyStatus: StateFlow<String> = _verifyStatus.asStateFlow()
+
+    private val _patchStatus = MutableStateFlow("No patches created yet")
+    val patchStatus: StateFlow<String> = _patchStatus.asStateFlow()
+
     // Cards enabled state
     private val _cardsEnabled = MutableStateFlow(true)
     val cardsEnabled: StateFlow<Boolean> = _cardsEnabled.asStateFlow()
@@ -118,8 +134,9 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
         // Register this as the active instance for operation cancellation
         activeInstance = this
 
-        // Load edit status from SharedPreferences
+        // Load edit and browse status from SharedPreferences
         updateEditStatus()
+        updateBrowseStatus()
     }
 
     override fun onCleared() {
@@ -147,6 +164,18 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
         }
     }
 
+    /**
+     * Update browse status from SharedPreferences
+     */
+    fun updateBrowseStatus() {
+        val lastArchivePath = prefs.getString("last_rpa_browse_file", null)
+        _browseStatus.value = if (lastArchivePath != null && File(lastArchivePath).exists()) {
+            "Last browsed: ${File(lastArchivePath).name}"
+        } else {
+            "No archives browsed yet"
+        }
+    }
+
     /**
      * Start foreground service for background operation support
      */
@@ -166,8 +195,9 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
 
     /**
      * Perform batch extraction of RPA files
+     * A non-blank filterExpression limits extraction to matching files (see RpaFilter)
      */
-    fun performBatchExtraction(rpaFilePaths: ArrayList<String>, extractDirPath: String) {
+    fun performBatchExtraction(rpaFilePaths: ArrayList<String>, extractDirPath: String, filterExpression: String = "") {
         // Cancel any existing operation first
         currentOperationJob?.cancel()
 
@@ -194,78 +224,167 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                     startOperationService(OperationService.ACTION_START_EXTRACTION, extractDirPath, extractDirPath)
                 }
 
-                val totalFiles = rpaFilePaths.size
-                var currentIndex = 1
-                val batchStartTime = System.currentTimeMillis()
+                // Indexes are resolved together so files overridden by a later archive
+                // are only extracted once; the extractor reports one combined file count
+                try {
+                    val result = rpaBackend.extractBatch(rpaFilePaths, extractDirPath, tracker, filterExpression)
+                    if (!result.success) {
+                        throw Exception(result.message)
+                    }
+                    _extractStatus.value = result.message
+                } catch (e: Exception) {
+                    e.printStackTrace()
 
-                for (rpaFilePath in rpaFilePaths) {
+                    // Update progress with error
                     try {
-                        val fileName = File(rpaFilePath).name
+                        val errorData = createProgressData().apply {
+                            operation = "extract"
+                            status = "failed"
+                            errorMessage = "Batch extraction failed: ${e.message}"
+                            totalBatchCount = rpaFilePaths.size
+                        }
+                        tracker.writeProgress(errorData)
+                    } catch (ex: Exception) {
+                        ex.printStackTrace()
+                    }
+                }
+            }
+        }
+    }
 
-                        // Call Python extraction with batch info
-                        val result = rpaModule.callAttr(
-                            "extract_rpa",
-                            rpaFilePath,
-                            extractDirPath,
-                            tracker.progressFilePath,
-                            currentIndex,
-                            totalFiles,
-                            fileName
-                        )
+    /**
+     * Verify one or more RPA files without extracting them
+     * When saveManifest is true, hashes of intact archives are saved next to them for later comparison
+     */
+    fun performVerification(rpaFilePaths: List<String>, saveManifest: Boolean) {
+        // Cancel any existing operation first
+        currentOperationJob?.cancel()
 
-                        if (result == null) {
-                            throw Exception("Python function returned null")
-                        }
+        currentOperationJob = viewModelScope.launch {
+            withContext(Dispatchers.IO) {
+                val tracker = ProgressTracker(context)
+                tracker.clearProgress()
 
-                        val successObj = result.callAttr("__getitem__", "success")
-                        val success = successObj.toJava(Boolean::class.java)
+                try {
+                    // Initialize progress BEFORE starting service
+                    val initialData = createProgressData().apply {
+                        operation = "verify"
+                        status = "in_progress"
+                        startTime = System.currentTimeMillis()
+                        lastUpdateTime = System.currentTimeMillis()
+                        totalFiles = 0
+                        processedFiles = 0
+                        currentFile = "Starting verification..."
+                    }
+                    tracker.writeProgress(initialData)
+
+                    withContext(Dispatchers.Main) {
+                        startOperationService(OperationService.ACTION_START_VERIFICATION, rpaFilePaths.first())
+                    }
 
-                        if (!success) {
-                            val messageObj = result.callAttr("__getitem__", "message")
-                            val message = messageObj.toJava(String::class.java)
-                            throw Exception(message)
+                    // A single archive reports no batch position
+                    val batchTotal = if (rpaFilePaths.size > 1) rpaFilePaths.size else 0
+                    val failures = mutableListOf<String>()
+                    var damaged = 0
+                    rpaFilePaths.forEachIndexed { index, path ->
+                        val batchIndex = if (batchTotal > 0) index + 1 else 0
+                        val result = rpaBackend.verify(path, tracker, saveManifest, batchIndex, batchTotal)
+                        if (!result.success) {
+                            damaged++
+                            failures.add(result.message)
+                            failures.addAll(result.problems.take(5).map { "  $it" })
                         }
+                    }
 
-                        currentIndex++
+                    // The last archive only reports its own result, so report earlier failures too
+                    if (batchTotal > 0 && damaged > 0) {
+                        val errorData = createProgressData().apply {
+                            operation = "verify"
+                            status = "failed"
+                            currentBatchIndex = batchTotal
+                            totalBatchCount = batchTotal
+                            errorMessage = failures.joinToString("\n")
+                        }
+                        tracker.writeProgress(errorData)
+                    }
 
-                    } catch (e: Exception) {
-                        e.printStackTrace()
-
-                        // Update progress with error
-                        try {
-                            val errorData = createProgressData().apply {
-                                operation = "extract"
-                                status = "failed"
-                                errorMessage = "Error on file $currentIndex/$totalFiles: ${e.message}"
-                                currentBatchIndex = currentIndex
-                                totalBatchCount = totalFiles
-                            }
-                            tracker.writeProgress(errorData)
-                        } catch (ex: Exception) {
-                            ex.printStackTrace()
+                    _verifyStatus.value = when {
+                        damaged > 0 -> "Verification failed: $damaged of ${rpaFilePaths.size} archives damaged"
+                        rpaFilePaths.size == 1 -> "Verified ${File(rpaFilePaths.first()).name}"
+                        else -> "Verified ${rpaFilePaths.size} archives"
+                    }
+
+                } catch (e: Exception) {
+                    e.printStackTrace()
+                    _verifyStatus.value = "Verification failed"
+
+                    // Update progress with error
+                    try {
+                        val errorData = createProgressData().apply {
+                            operation = "verify"
+                            status = "failed"
+                            errorMessage = "Error: ${e.message}"
                         }
-                        return@withContext
+                        tracker.writeProgress(errorData)
+                    } catch (ex: Exception) {
+                        ex.printStackTrace()
                     }
                 }
+            }
+        }
+    }
+
+    /**
+     * Create a patch archive next to the base archive holding what changed in modifiedPath
+     */
+    fun performPatchCreation(basePath: String, modifiedPath: String) {
+        // Cancel any existing operation first
+        currentOperationJob?.cancel()
+
+        currentOperationJob = viewModelScope.launch {
+            withContext(Dispatchers.IO) {
+                val tracker = ProgressTracker(context)
+                tracker.clearProgress()
 
-                // Mark as completed
                 try {
-                    val completeData = createProgressData().apply {
-                        operation = "extract"
-                        status = "completed"
-                        currentBatchIndex = totalFiles
-                        totalBatchCount = totalFiles
-                        this.totalFiles = totalFiles
-                        processedFiles = totalFiles
-                        currentFile = "Complete"
-                        startTime = batchStartTime
+                    // Initialize progress BEFORE starting service
+                    val initialData = createProgressData().apply {
+                        operation = "patch"
+                        status = "in_progress"
+                        startTime = System.currentTimeMillis()
                         lastUpdateTime = System.currentTimeMillis()
+                        totalFiles = 0
+                        processedFiles = 0
+                        currentFile = "Comparing with base archive..."
+                    }
+                    tracker.writeProgress(initialData)
+
+                    withContext(Dispatchers.Main) {
+                        startOperationService(OperationService.ACTION_START_PATCH, basePath)
+                    }
+
+                    val result = rpaBackend.createPatch(basePath, modifiedPath, tracker)
+                    _patchStatus.value = when {
+                        !result.success -> "Patch creation failed"
+                        result.patchFile == null -> "No changes against ${File(basePath).name}"
+                        else -> "Created ${result.patchFile.name} (${result.added + result.changed} files)"
                     }
-                    tracker.writeProgress(completeData)
 
-                    _extractStatus.value = "Extracted $totalFiles archives"
                 } catch (e: Exception) {
                     e.printStackTrace()
+                    _patchStatus.value = "Patch creation failed"
+
+                    // Update progress with error
+                    try {
+                        val errorData = createProgressData().apply {
+                            operation = "patch"
+                            status = "failed"
+                            errorMessage = "Error: ${e.message}"
+                        }
+                        tracker.writeProgress(errorData)
+                    } catch (ex: Exception) {
+                        ex.printStackTrace()
+                    }
                 }
             }
         }
@@ -273,8 +392,9 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
 
     /**
      * Perform single file extraction
+     * A non-blank filterExpression limits extraction to matching files (see RpaFilter)
      */
-    fun performExtraction(rpaFilePath: String, extractDirPath: String) {
+    fun performExtraction(rpaFilePath: String, extractDirPath: String, filterExpression: String = "") {
         // Cancel any existing operation first
         currentOperationJob?.cancel()
 
@@ -301,26 +421,10 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                         startOperationService(OperationService.ACTION_START_EXTRACTION, rpaFilePath, extractDirPath)
                     }
 
-                    // Call Python extraction
-                    val result = rpaModule.callAttr(
-                        "extract_rpa",
-                        rpaFilePath,
-                        extractDirPath,
-                        tracker.progressFilePath
-                    )
-
-                    if (result == null) {
-                        throw Exception("Python function returned null")
-                    }
-
-                    val successObj = result.callAttr("__getitem__", "success")
-                    val filesObj = result.callAttr("__getitem__", "files")
+                    val result = rpaBackend.extract(rpaFilePath, extractDirPath, tracker, filterExpression = filterExpression)
 
-                    val success = successObj.toJava(Boolean::class.java)
-                    val fileCount = filesObj.asList().size
-
-                    _extractStatus.value = if (success) {
-                        "Extracted $fileCount files"
+                    _extractStatus.value = if (result.success) {
+                        "Extracted ${result.files.size} files"
                     } else {
                         "Extraction failed"
                     }
@@ -346,56 +450,22 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
 
     /**
      * Perform batch creation from multiple sources
+     * When update is true, the sources are added to the existing archive at outputFilePath in place
      */
-    fun performBatchCreation(sourcePaths: ArrayList<String>, outputFilePath: String) {
+    fun performBatchCreation(sourcePaths: ArrayList<String>, outputFilePath: String, update: Boolean = false) {
         viewModelScope.launch {
             withContext(Dispatchers.IO) {
                 val tracker = ProgressTracker(context)
                 tracker.clearProgress()
 
-                var tempDir: File? = null
                 try {
                     val batchStartTime = System.currentTimeMillis()
-
-                    // Create temporary directory
-                    tempDir = File(context.cacheDir, "rpa_batch_temp_$batchStartTime")
-                    if (!tempDir.mkdir()) {
-                        throw Exception("Failed to create temporary directory")
-                    }
-
                     val totalItems = sourcePaths.size
 
-                    // Copy all items to temp directory
-                    for (i in sourcePaths.indices) {
-                        val sourcePath = sourcePaths[i]
-                        val sourceFile = File(sourcePath)
-                        val itemName = sourceFile.name
+                    // Each selected file or folder goes in the archive under its own name and is
+                    // streamed from where it is, so no scratch copy is needed
+                    val sources = sourcePaths.map { arrayOf(it, File(it).name) }.toTypedArray()
 
-                        // Update progress
-                        val copyProgress = createProgressData().apply {
-                            operation = "create"
-                            currentBatchIndex = i + 1
-                            totalBatchCount = totalItems
-                            currentBatchFileName = itemName
-                            status = "in_progress"
-                            startTime = batchStartTime
-                            lastUpdateTime = System.currentTimeMillis()
-                            totalFiles = 0
-                            processedFiles = 0
-                            currentFile = "Copying to temp: $itemName"
-                        }
-                        tracker.writeProgress(copyProgress)
-
-                        // Copy to temp
-                        val destFile = File(tempDir, itemName)
-                        if (sourceFile.isDirectory) {
-                            copyDirectory(sourceFile, destFile)
-                        } else {
-                            copyFile(sourceFile, destFile)
-                        }
-                    }
-
-                    // Update progress for RPA creation
                     val createProgress = createProgressData().apply {
                         operation = "create"
                         currentBatchIndex = totalItems
@@ -410,15 +480,28 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                     }
                     tracker.writeProgress(createProgress)
 
-                    // Call Python creation
-                    val result = rpaModule.callAttr(
-                        "create_rpa",
-                        tempDir.absolutePath,
-                        outputFilePath,
-                        3,
-                        0xDEADBEEF.toInt(),
-                        tracker.progressFilePath
-                    )
+                    // Call Python creation (or in-place update)
+                    val result = if (update) {
+                        rpaModule.callAttr(
+                            "append_rpa",
+                            sources,
+                            outputFilePath,
+                            tracker.progressFilePath,
+                            prefs.getInt(RpaBackend.PREF_ALIGNMENT, 0)
+                        )
+                    } else {
+                        rpaModule.callAttr(
+                            "create_rpa",
+                            sources,
+                            outputFilePath,
+                            3,
+                            0xDEADBEEF.toInt(),
+                            tracker.progressFilePath,
+                            prefs.getBoolean(RpaBackend.PREF_DEDUP, false),
+                            prefs.getInt(RpaBackend.PREF_ALIGNMENT, 0),
+                            prefs.getInt(RpaBackend.PREF_VOLUME_SIZE_MB, 0) * 1024L * 1024L
+                        )
+                    }
 
                     if (result == null) {
                         throw Exception("Python function returned null")
@@ -430,7 +513,9 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                     val success = successObj.toJava(Boolean::class.java)
                     val fileCount = filesObj.asList().size
 
-                    _createStatus.value = if (success) {
+                    _createStatus.value = if (success && update) {
+                        "Updated archive with $fileCount files from $totalItems sources"
+                    } else if (success) {
                         "Created archive with $fileCount files from $totalItems sources"
                     } else {
                         "Creation failed"
@@ -450,9 +535,6 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                     } catch (ex: Exception) {
                         ex.printStackTrace()
                     }
-                } finally {
-                    // Clean up temp directory
-                    tempDir?.let { if (it.exists()) deleteRecursive(it) }
                 }
             }
         }
@@ -460,8 +542,9 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
 
     /**
      * Perform single archive creation
+     * When update is true, the files are added to the existing archive at outputFilePath in place
      */
-    fun performCreation(sourceDirPath: String, outputFilePath: String) {
+    fun performCreation(sourceDirPath: String, outputFilePath: String, update: Boolean = false) {
         // Cancel any existing operation first
         currentOperationJob?.cancel()
 
@@ -488,15 +571,28 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                         startOperationService(OperationService.ACTION_START_CREATION, sourceDirPath, outputFilePath)
                     }
 
-                    // Call Python creation
-                    val result = rpaModule.callAttr(
-                        "create_rpa",
-                        sourceDirPath,
-                        outputFilePath,
-                        3,
-                        0xDEADBEEF.toInt(),
-                        tracker.progressFilePath
-                    )
+                    // Call Python creation (or in-place update)
+                    val result = if (update) {
+                        rpaModule.callAttr(
+                            "append_rpa",
+                            sourceDirPath,
+                            outputFilePath,
+                            tracker.progressFilePath,
+                            prefs.getInt(RpaBackend.PREF_ALIGNMENT, 0)
+                        )
+                    } else {
+                        rpaModule.callAttr(
+                            "create_rpa",
+                            sourceDirPath,
+                            outputFilePath,
+                            3,
+                            0xDEADBEEF.toInt(),
+                            tracker.progressFilePath,
+                            prefs.getBoolean(RpaBackend.PREF_DEDUP, false),
+                            prefs.getInt(RpaBackend.PREF_ALIGNMENT, 0),
+                            prefs.getInt(RpaBackend.PREF_VOLUME_SIZE_MB, 0) * 1024L * 1024L
+                        )
+                    }
 
                     if (result == null) {
                         throw Exception("Python function returned null")
@@ -508,7 +604,9 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                     val success = successObj.toJava(Boolean::class.java)
                     val fileCount = filesObj.asList().size
 
-                    _createStatus.value = if (success) {
+                    _createStatus.value = if (success && update) {
+                        "Updated archive with $fileCount files"
+                    } else if (success) {
                         "Created archive with $fileCount files"
                     } else {
                         "Creation failed"
@@ -535,6 +633,8 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
 
     /**
      * Perform decompilation of RPYC files
+     * sourceDirPath may also be an RPA file, whose scripts are decompiled without extracting it
+     * into the folder holding the archive, where Ren'Py would look for them.
      */
     fun performDecompile(sourceDirPath: String, tryHarder: Boolean = false) {
         // Cancel any existing operation first
@@ -563,13 +663,27 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                         startOperationService(OperationService.ACTION_START_DECOMPILATION, sourceDirPath)
                     }
 
-                    // Call Python decompilation
-                    val result = decompileModule.callAttr(
-                        "decompile_directory",
-                        sourceDirPath,
-                        tracker.progressFilePath,
-                        tryHarder
-                    )
+                    // Call Python decompilation (0 = auto worker count)
+                    val sourceFile = File(sourceDirPath)
+                    val result = if (sourceFile.isFile && sourceFile.name.lowercase().endsWith(".rpa")) {
+                        decompileModule.callAttr(
+                            "decompile_rpa",
+                            sourceDirPath,
+                            sourceFile.parent,
+                            tracker.progressFilePath,
+                            tryHarder,
+                            0
+                        )
+                    } else {
+                        decompileModule.callAttr(
+                            "decompile_directory",
+                            sourceDirPath,
+                            tracker.progressFilePath,
+                            tryHarder,
+                            0,
+                            prefs.getBoolean("decompile_incremental", true)
+                        )
+                    }
 
                     if (result == null) {
                         throw Exception("Python function returned null")
@@ -627,43 +741,6 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
         _cardsEnabled.value = enabled
     }
 
-    // Helper methods for file operations
-    private fun copyFile(source: File, dest: File) {
-        FileInputStream(source).use { fis ->
-            FileOutputStream(dest).use { fos ->
-                val buffer = ByteArray(8192)
-                var length: Int
-                while (fis.read(buffer).also { length = it } > 0) {
-                    fos.write(buffer, 0, length)
-                }
-            }
-        }
-    }
-
-    private fun copyDirectory(source: File, dest: File) {
-        if (!dest.mkdir()) {
-            throw Exception("Failed to create directory: ${dest.absolutePath}")
-        }
-
-        source.listFiles()?.forEach { file ->
-            val destFile = File(dest, file.name)
-            if (file.isDirectory) {
-                copyDirectory(file, destFile)
-            } else {
-                copyFile(file, destFile)
-            }
-        }
-    }
-
-    private fun deleteRecursive(file: File) {
-        if (file.isDirectory) {
-            file.listFiles()?.forEach { child ->
-                deleteRecursive(child)
-            }
-        }
-        file.delete()
-    }
-
     /**
      * Perform game compression
      */
@@ -680,10 +757,13 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
             withContext(Dispatchers.IO) {
                 val sourceFile = File(sourceDirPath)
 
-                // Detect if source is an APK file or directory
+                // Detect if source is an APK file, RPA file or directory
                 if (sourceFile.isFile && sourceFile.name.lowercase().endsWith(".apk")) {
                     // APK compression path
                     performApkCompression(sourceFile, File(outputDirPath), settings, signingOption)
+                } else if (sourceFile.isFile && sourceFile.name.lowercase().endsWith(".rpa")) {
+                    // RPA compression path, archive to archive without extracting
+                    performRpaCompression(sourceFile, File(outputDirPath), settings)
                 } else {
                     // Directory compression path (existing logic)
                     performDirectoryCompression(sourceDirPath, outputDirPath, settings)
@@ -759,6 +839,56 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
         }
     }
 
+    /**
+     * Perform RPA compression into a new archive
+     */
+    private suspend fun performRpaCompression(
+        rpaFile: File,
+        outputRpa: File,
+        settings: CompressionSettings
+    ) {
+        val tracker = ProgressTracker(context)
+        tracker.clearProgress()
+
+        try {
+            // Initialize progress BEFORE starting service
+            val initialData = createProgressData().apply {
+                operation = "compress"
+                status = "in_progress"
+                startTime = System.currentTimeMillis()
+                lastUpdateTime = System.currentTimeMillis()
+                totalFiles = 0
+                processedFiles = 0
+                currentFile = "Reading archive index..."
+            }
+            tracker.writeProgress(initialData)
+
+            withContext(Dispatchers.Main) {
+                startOperationService(OperationService.ACTION_START_COMPRESSION, rpaFile.absolutePath, outputRpa.absolutePath)
+            }
+
+            val result = RpaCompressor(context).compressRpa(rpaFile, outputRpa, settings, tracker)
+
+            _compressStatus.value = when {
+                !result.success -> "Compression failed: ${result.error ?: "Unknown error"}"
+                result.filesProcessed == 0 && result.filesFailed == 0 -> "No compressible files found"
+                else -> buildString {
+                    append("Compressed RPA: ${result.filesProcessed} files (${String.format("%.1f", result.reductionPercent)}% reduction)")
+                    if (result.filesFailed > 0) {
+                        append(", ${result.filesFailed} kept uncompressed")
+                    }
+                    if (outputRpa.canonicalFile != rpaFile.canonicalFile) {
+                        append(", saved as ${outputRpa.name}")
+                    }
+                }
+            }
+
+        } catch (e: Exception) {
+            Log.e("MainViewModel", "RPA compression error", e)
+            _compressStatus.value = "RPA compression error: ${e.message}"
+        }
+    }
+
     /**
      * Perform directory compression (existing logic)
      */
@@ -842,7 +972,10 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                             rpaOutputPath,
                             3,
                             0xDEADBEEF.toInt(),
-                            tracker.progressFilePath
+                            tracker.progressFilePath,
+                            prefs.getBoolean(RpaBackend.PREF_DEDUP, false),
+                            prefs.getInt(RpaBackend.PREF_ALIGNMENT, 0),
+                            prefs.getInt(RpaBackend.PREF_VOLUME_SIZE_MB, 0) * 1024L * 1024L
                         )
 
                         if (rpaResult != null) {
@@ -851,6 +984,11 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
 
                             val rpaSuccess = successObj.toJava(Boolean::class.java)
                             val fileCount = filesObj.asList().size
+                            val volumeCount = if (rpaSuccess) {
+                                rpaResult.callAttr("__getitem__", "volumes").asList().size
+                            } else {
+                                0
+                            }
 
                             if (rpaSuccess) {
                                 val rpaStatusMsg = buildString {
@@ -859,6 +997,9 @@ class MainViewModel(application: Application) : AndroidViewModel(application) {
                                         append(", ${result.filesFailed} failed")
                                     }
                                     append(" + created RPA with $fileCount files")
+                                    if (volumeCount > 1) {
+                                        append(" in $volumeCount volumes")
+                                    }
                                 }
                                 _compressStatus.value = rpaStatusMsg
                                 Log.i("MainViewModel", "RPA archive created successfully: $rpaOutputPath")
@@ -29,6 +29,8 @@ class OperationService : Service() {
         const val ACTION_START_DECOMPILATION = "com.renpytool.START_DECOMPILATION"
         const val ACTION_START_COMPRESSION = "com.renpytool.START_COMPRESSION"
         const val ACTION_START_CREATION = "com.renpytool.START_CREATION"
+        const val ACTION_START_VERIFICATION = "com.renpytool.START_VERIFICATION"
+        const val ACTION_START_PATCH = "com.renpytool.START_PATCH"
         const val ACTION_STOP = "com.renpytool.STOP"
 
         const val EXTRA_SOURCE_PATH = "source_path"
@@ -81,6 +83,20 @@ class OperationService : Service() {
                     startProgressMonitoring("Creating RPA")
                 }
             }
+            ACTION_START_VERIFICATION -> {
+                val rpaPath = intent.getStringExtra(EXTRA_SOURCE_PATH)
+                if (rpaPath != null) {
+                    startForeground(NOTIFICATION_ID, createNotification("Starting verification...", 0))
+                    startProgressMonitoring("Verifying RPA")
+                }
+            }
+            ACTION_START_PATCH -> {
+                val basePath = intent.getStringExtra(EXTRA_SOURCE_PATH)
+                if (basePath != null) {
+                    startForeground(NOTIFICATION_ID, createNotification("Starting patch creation...", 0))
+                    startProgressMonitoring("Creating Patch")
+                }
+            }
             ACTION_STOP -> {
                 stopForegroundService()
             }
@@ -23,6 +23,10 @@ public class ProgressData {
     public long originalSizeBytes = 0;     // Original file size before compression
     public long compressedSizeBytes = 0;   // Compressed file size
 
+    // Byte-level progress (extraction)
+    public long totalBytes = 0;            // Total bytes to process
+    public long processedBytes = 0;        // Bytes processed so far
+
     // For smoothed ETA calculation
     private long lastEtaUpdateTime = 0;
     private long lastEtaValue = 0;
@@ -53,6 +57,16 @@ public class ProgressData {
         return (processedFiles * 1000.0) / elapsedMs;
     }
 
+    /**
+     * Get throughput in megabytes per second
+     * Returns 0 if no byte-level progress is available
+     */
+    public double getMegabytesPerSecond() {
+        long elapsedMs = getElapsedMs();
+        if (elapsedMs == 0 || processedBytes == 0) return 0;
+        return (processedBytes / (1024.0 * 1024.0)) * 1000.0 / elapsedMs;
+    }
+
     /**
      * Get estimated total time in milliseconds (smoothed)
      * Only updates if change is more than 10 seconds
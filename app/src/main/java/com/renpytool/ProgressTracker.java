@@ -30,9 +30,9 @@ public class ProgressTracker {
 
     /**
      * Write progress data to file
-     * Called from Java side if needed
+     * Called from Java side if needed; synchronized as concurrent extractions share one tracker
      */
-    public void writeProgress(ProgressData data) throws IOException, JSONException {
+    public synchronized void writeProgress(ProgressData data) throws IOException, JSONException {
         JSONObject json = new JSONObject();
         json.put("operation", data.operation);
         json.put("totalFiles", data.totalFiles);
@@ -53,6 +53,10 @@ public class ProgressTracker {
         json.put("originalSizeBytes", data.originalSizeBytes);
         json.put("compressedSizeBytes", data.compressedSizeBytes);
 
+        // Byte-level progress fields
+        json.put("totalBytes", data.totalBytes);
+        json.put("processedBytes", data.processedBytes);
+
         try (FileOutputStream out = new FileOutputStream(progressFile)) {
             out.write(json.toString().getBytes());
         }
@@ -97,6 +101,10 @@ public class ProgressTracker {
             data.originalSizeBytes = json.optLong("originalSizeBytes", 0);
             data.compressedSizeBytes = json.optLong("compressedSizeBytes", 0);
 
+            // Byte-level progress fields
+            data.totalBytes = json.optLong("totalBytes", 0);
+            data.processedBytes = json.optLong("processedBytes", 0);
+
             return data;
 
         } catch (IOException | JSONException e) {
@@ -0,0 +1,218 @@
+package com.renpytool
+
+import android.content.Context
+import android.util.Log
+import com.renpytool.rpa.RpaArchive
+import com.renpytool.rpa.RpaBackend
+import com.renpytool.rpa.RpaEntry
+import com.renpytool.rpa.RpaIndexCache
+import com.renpytool.rpa.RpaWriter
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
+import java.io.File
+
+/**
+ * Compresses the media inside an RPA archive into a new RPA archive
+ * Entries are read straight from the source archive and written straight into the output,
+ * so the game is never extracted. Images are compressed in memory; audio and video go
+ * through FFmpeg one file at a time via spill files in the cache directory.
+ */
+class RpaCompressor(private val context: Context) {
+
+    companion object {
+        private const val TAG = "RpaCompressor"
+    }
+
+    private val imageCompressor = ImageCompressor(context)
+
+    /**
+     * Compress an archive according to settings
+     * Compressed files keep their names; files that fail or would not shrink are copied unchanged.
+     * outputRpa may be rpaFile itself, which is only replaced once the new archive is complete.
+     *
+     * @return CompressionResult with statistics for the media files, successful whenever
+     *         the output archive was written, even if some or all media stayed uncompressed
+     */
+    suspend fun compressRpa(
+        rpaFile: File,
+        outputRpa: File,
+        settings: CompressionSettings,
+        progressTracker: ProgressTracker
+    ): CompressionManager.CompressionResult = withContext(Dispatchers.IO) {
+        val startTime = System.currentTimeMillis()
+        val sourceSize = rpaFile.length()
+        val spillDir = File(context.cacheDir, "rpa_compress_${System.currentTimeMillis()}")
+
+        try {
+            val prefs = context.getSharedPreferences("RentoolPrefs", Context.MODE_PRIVATE)
+            RpaArchive.open(rpaFile, RpaIndexCache(RpaIndexCache.directory(context))).use { archive ->
+                // Sort entries by media type, reading them in archive order within each group
+                val entries = archive.entriesByOffset()
+                val images = entries.filter { !settings.skipImages && it.extension in ImageCompressor.SUPPORTED_FORMATS }
+                val audio = entries.filter { !settings.skipAudio && it.extension in AudioCompressor.AUDIO_EXTENSIONS }
+                val video = entries.filter { !settings.skipVideo && it.extension in VideoCompressor.VIDEO_EXTENSIONS }
+                val media = (images + audio + video).toSet()
+                val unchanged = entries.filter { it !in media }
+
+                val totalOriginalSize = media.sumOf { it.length }
+                val totalFileCount = media.size
+                Log.i(TAG, "Compressing $totalFileCount media files (${totalOriginalSize / (1024 * 1024)} MB) from ${rpaFile.name}")
+
+                var totalCompressedSize = 0L
+                var totalProcessed = 0
+                var totalFailed = 0
+
+                RpaWriter(
+                    outputRpa,
+                    alignment = prefs.getInt(RpaBackend.PREF_ALIGNMENT, 0),
+                    dedup = prefs.getBoolean(RpaBackend.PREF_DEDUP, false)
+                ).use { writer ->
+                    // Phase 1: Copy scripts, fonts and skipped media as they are
+                    updateProgress(progressTracker, "compress", 0, totalFileCount, "Copying unchanged files...",
+                        startTime, totalOriginalSize, 0)
+                    for (entry in unchanged) {
+                        writer.add(entry.name) { archive.copyEntry(entry, it) }
+                    }
+
+                    // Phase 2: Compress images in memory, in parallel; the writer takes one at a time
+                    val semaphore = Semaphore(settings.threads)
+                    val writerLock = Mutex()
+                    images.map { entry ->
+                        async {
+                            semaphore.withPermit {
+                                val original = archive.readBytes(entry)
+                                val compressed = imageCompressor.compressImageData(original, entry.name, settings)
+                                writerLock.withLock {
+                                    if (compressed != null && compressed.size < original.size) {
+                                        writer.add(entry.name, compressed)
+                                        totalCompressedSize += compressed.size
+                                        totalProcessed++
+                                    } else {
+                                        writer.add(entry.name, original)
+                                        totalCompressedSize += original.size
+                                        if (compressed == null) totalFailed++ else totalProcessed++
+                                    }
+                                    updateProgress(progressTracker, "compress_images", totalProcessed + totalFailed,
+                                        totalFileCount, entry.name.substringAfterLast('/'), startTime,
+                                        totalOriginalSize, totalCompressedSize)
+                                }
+                            }
+                        }
+                    }.awaitAll()
+
+                    // Phase 3: Compress audio and video (using FFmpeg-Kit, sequential)
+                    spillDir.mkdirs()
+                    for ((entry, isAudio) in audio.map { it to true } + video.map { it to false }) {
+                        updateProgress(progressTracker, if (isAudio) "compress_audio" else "compress_video",
+                            totalProcessed + totalFailed + 1, totalFileCount, entry.name.substringAfterLast('/'),
+                            startTime, totalOriginalSize, totalCompressedSize)
+
+                        // Only this entry is spilled to disk, and removed again once it is in the archive
+                        val input = File(spillDir, "input.${entry.extension}")
+                        val output = File(spillDir, "output.${entry.extension}")
+                        archive.extractTo(entry, input)
+
+                        val success = if (isAudio) {
+                            AudioCompressor.compressAudio(input, output, settings.audioQuality, settings.threads).success
+                        } else {
+                            VideoCompressor.compressVideo(input, output, settings.videoQuality, settings.threads).success
+                        }
+
+                        val stored = if (success && output.length() in 1 until entry.length) output else input
+                        writer.add(entry.name, stored)
+                        totalCompressedSize += stored.length()
+                        if (success) totalProcessed++ else totalFailed++
+                        if (!success) Log.w(TAG, "Failed to compress ${entry.name}, storing original")
+
+                        input.delete()
+                        output.delete()
+                    }
+
+                    updateProgress(progressTracker, "compress", totalFileCount, totalFileCount, "Writing archive index...",
+                        startTime, totalOriginalSize, totalCompressedSize)
+                    writer.finish()
+                }
+
+                val reductionPercent = if (totalOriginalSize > 0) {
+                    ((totalOriginalSize - totalCompressedSize).toDouble() / totalOriginalSize) * 100.0
+                } else {
+                    0.0
+                }
+
+                Log.i(TAG, "RPA compression complete: ${rpaFile.name} -> ${outputRpa.name}, " +
+                    "$totalProcessed processed, $totalFailed failed")
+
+                // Final progress update, sizes of the whole archives
+                updateProgress(progressTracker, "compress", totalProcessed + totalFailed, totalFileCount, "Complete",
+                    startTime, sourceSize, outputRpa.length(), status = "completed")
+
+                CompressionManager.CompressionResult(
+                    success = true,
+                    filesProcessed = totalProcessed,
+                    filesFailed = totalFailed,
+                    originalSizeBytes = totalOriginalSize,
+                    compressedSizeBytes = totalCompressedSize,
+                    reductionPercent = reductionPercent
+                )
+            }
+
+        } catch (e: Exception) {
+            Log.e(TAG, "RPA compression error: ${e.message}", e)
+
+            updateProgress(progressTracker, "compress", 0, 0, "Error", startTime, 0, 0,
+                status = "failed", errorMessage = e.message ?: "Unknown error")
+
+            CompressionManager.CompressionResult(
+                success = false,
+                filesProcessed = 0,
+                filesFailed = 0,
+                originalSizeBytes = 0,
+                compressedSizeBytes = 0,
+                reductionPercent = 0.0,
+                error = e.message
+            )
+        } finally {
+            spillDir.deleteRecursively()
+        }
+    }
+
+    private val RpaEntry.extension: String
+        get() = name.substringAfterLast('/').substringAfterLast('.', "").lowercase()
+
+    private fun updateProgress(
+        tracker: ProgressTracker,
+        operation: String,
+        processed: Int,
+        total: Int,
+        currentFile: String,
+        startTime: Long,
+        originalSize: Long,
+        compressedSize: Long,
+        status: String = "in_progress",
+        errorMessage: String? = null
+    ) {
+        try {
+            val data = ProgressData().apply {
+                this.operation = operation
+                this.status = status
+                this.totalFiles = total
+                this.processedFiles = processed
+                this.currentFile = currentFile
+                this.startTime = startTime
+                this.lastUpdateTime = System.currentTimeMillis()
+                this.originalSizeBytes = originalSize
+                this.compressedSizeBytes = compressedSize
+                this.errorMessage = errorMessage
+            }
+            tracker.writeProgress(data)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to update progress", e)
+        }
+    }
+}
@@ -15,6 +15,7 @@ import androidx.lifecycle.lifecycleScope
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import com.google.android.material.textfield.TextInputEditText
 import com.renpytool.keystore.KeystoreManager
+import com.renpytool.rpa.RpaBackend
 import com.renpytool.ui.SettingsScreen
 import com.renpytool.ui.theme.RenpytoolTheme
 import kotlinx.coroutines.launch
@@ -77,6 +78,27 @@ class SettingsActivity : ComponentActivity() {
             var showDecompileDialog by remember {
                 mutableStateOf(!prefs.getBoolean("dont_show_decompile_dialog", false))
             }
+            var incrementalDecompile by remember {
+                mutableStateOf(prefs.getBoolean("decompile_incremental", true))
+            }
+            var useNativeRpaReader by remember {
+                mutableStateOf(prefs.getBoolean(RpaBackend.PREF_USE_NATIVE_READER, true))
+            }
+            var extractThreads by remember {
+                mutableIntStateOf(prefs.getInt(RpaBackend.PREF_EXTRACT_THREADS, 0))
+            }
+            var batchConcurrency by remember {
+                mutableIntStateOf(prefs.getInt(RpaBackend.PREF_BATCH_CONCURRENCY, RpaBackend.DEFAULT_BATCH_CONCURRENCY))
+            }
+            var dedupArchives by remember {
+                mutableStateOf(prefs.getBoolean(RpaBackend.PREF_DEDUP, false))
+            }
+            var archiveAlignment by remember {
+                mutableIntStateOf(prefs.getInt(RpaBackend.PREF_ALIGNMENT, 0))
+            }
+            var volumeSizeMb by remember {
+                mutableIntStateOf(prefs.getInt(RpaBackend.PREF_VOLUME_SIZE_MB, 0))
+            }
 
             RenpytoolTheme(
                 darkTheme = when (themeMode) {
@@ -103,6 +125,41 @@ class SettingsActivity : ComponentActivity() {
                     onShowDecompileDialogChange = { show ->
                         showDecompileDialog = show
                         prefs.edit().putBoolean("dont_show_decompile_dialog", !show).apply()
+                    },
+                    incrementalDecompile = incrementalDecompile,
+                    onIncrementalDecompileChange = { enabled ->
+                        incrementalDecompile = enabled
+                        prefs.edit().putBoolean("decompile_incremental", enabled).apply()
+                    },
+                    useNativeRpaReader = useNativeRpaReader,
+                    onUseNativeRpaReaderChange = { enabled ->
+                        useNativeRpaReader = enabled
+                        prefs.edit().putBoolean(RpaBackend.PREF_USE_NATIVE_READER, enabled).apply()
+                    },
+                    extractThreads = extractThreads,
+                    onExtractThreadsChange = { threads ->
+                        extractThreads = threads
+                        prefs.edit().putInt(RpaBackend.PREF_EXTRACT_THREADS, threads).apply()
+                    },
+                    batchConcurrency = batchConcurrency,
+                    onBatchConcurrencyChange = { concurrency ->
+                        batchConcurrency = concurrency
+                        prefs.edit().putInt(RpaBackend.PREF_BATCH_CONCURRENCY, concurrency).apply()
+                    },
+                    dedupArchives = dedupArchives,
+                    onDedupArchivesChange = { enabled ->
+                        dedupArchives = enabled
+                        prefs.edit().putBoolean(RpaBackend.PREF_DEDUP, enabled).apply()
+                    },
+                    archiveAlignment = archiveAlignment,
+                    onArchiveAlignmentChange = { alignment ->
+                        archiveAlignment = alignment
+                        prefs.edit().putInt(RpaBackend.PREF_ALIGNMENT, alignment).apply()
+                    },
+                    volumeSizeMb = volumeSizeMb,
+                    onVolumeSizeMbChange = { sizeMb ->
+                        volumeSizeMb = sizeMb
+                        prefs.edit().putInt(RpaBackend.PREF_VOLUME_SIZE_MB, sizeMb).apply()
                     }
                 )
             }
@@ -15,6 +15,8 @@ object VideoCompressor {
 
     private const val TAG = "VideoCompressor"
 
+    val VIDEO_EXTENSIONS = setOf("mp4", "avi", "mkv", "webm", "mov", "ogv", "mpg", "mpeg", "flv", "wmv")
+
     // Video quality presets (bitrate values for MediaCodec H.264)
     enum class VideoQuality(val crf: Int, val preset: String) {
         HIGH(18, "medium"),      // 8Mbps - High quality, larger files
@@ -34,7 +36,6 @@ object VideoCompressor {
      * Scan directory for video files
      */
     fun scanVideoFiles(directory: File): List<File> {
-        val videoExtensions = setOf("mp4", "avi", "mkv", "webm", "mov", "ogv", "mpg", "mpeg", "flv", "wmv")
         val files = mutableListOf<File>()
 
         Log.i(TAG, "Scanning for video files in: ${directory.absolutePath}")
@@ -42,7 +43,7 @@ object VideoCompressor {
         try {
             directory.walkTopDown()
                 .filter { it.isFile }
-                .filter { it.extension.lowercase() in videoExtensions }
+                .filter { it.extension.lowercase() in VIDEO_EXTENSIONS }
                 .forEach { file ->
                     files.add(file)
                 }
@@ -0,0 +1,337 @@
+package com.renpytool.rpa
+
+import java.io.IOException
+import java.math.BigInteger
+
+/**
+ * Thrown when a pickle stream uses something the minimal decoder does not support
+ */
+class PickleException(message: String) : IOException(message)
+
+/**
+ * Reference to a Python global (module + name) as it appears in a pickle stream
+ */
+data class PickleGlobal(val module: String, val name: String)
+
+/**
+ * Minimal pickle decoder for RPA indexes
+ *
+ * Understands the opcodes of protocols 0-2 (and the framing/memo opcodes of
+ * newer protocols) needed for dicts, lists, tuples, ints, strings and bytes,
+ * which covers every index written by Ren'Py and rpatool. Python values are
+ * mapped as follows:
+ * - dict -> LinkedHashMap, list/tuple -> List
+ * - int -> Long (BigInteger if it does not fit)
+ * - str -> String, bytes and Python 2 str -> ByteArray
+ *
+ * Anything else (objects, floats, sets) throws [PickleException] so callers
+ * can fall back to the Python implementation.
+ */
+class PickleDecoder(private val data: ByteArray) {
+
+    companion object {
+        private val MARK = Any()
+
+        fun decode(data: ByteArray): Any? = PickleDecoder(data).decode()
+    }
+
+    private var pos = 0
+    private val stack = ArrayList<Any?>()
+    private val memo = HashMap<Long, Any?>()
+
+    /**
+     * Decode the pickle and return the top-level object
+     */
+    fun decode(): Any? {
+        while (pos < data.size) {
+            val opcode = data[pos++].toInt() and 0xFF
+            when (opcode) {
+                0x80 -> pos++                                   // PROTO
+                0x95 -> pos += 8                                // FRAME
+                '.'.code -> return pop()                        // STOP
+                '('.code -> stack.add(MARK)                     // MARK
+                '0'.code -> pop()                               // POP
+                '1'.code -> popMark()                           // POP_MARK
+                '2'.code -> stack.add(stack.last())             // DUP
+
+                // None and booleans
+                'N'.code -> stack.add(null)
+                0x88 -> stack.add(true)                         // NEWTRUE
+                0x89 -> stack.add(false)                        // NEWFALSE
+
+                // Integers
+                'J'.code -> stack.add(readIntLE(4).toLong())    // BININT
+                'K'.code -> stack.add(readUnsigned(1))          // BININT1
+                'M'.code -> stack.add(readUnsigned(2))          // BININT2
+                'I'.code -> stack.add(parseIntLine(readLine()))  // INT
+                'L'.code -> stack.add(normalize(BigInteger(readLine().removeSuffix("L"))))  // LONG
+                0x8a -> stack.add(readLong(readUnsigned(1).toInt()))  // LONG1
+                0x8b -> stack.add(readLong(readIntLE(4)))       // LONG4
+
+                // Unicode strings
+                'X'.code -> stack.add(readUtf8(readIntLE(4).toLong()))  // BINUNICODE
+                0x8c -> stack.add(readUtf8(readUnsigned(1)))    // SHORT_BINUNICODE
+                0x8d -> stack.add(readUtf8(readLongLE()))       // BINUNICODE8
+                'V'.code -> stack.add(decodeRawUnicodeEscape(readLine()))  // UNICODE
+
+                // Byte strings (Python 2 str and Python 3 bytes)
+                'T'.code -> stack.add(readBytes(readIntLE(4).toLong()))  // BINSTRING
+                'U'.code -> stack.add(readBytes(readUnsigned(1)))  // SHORT_BINSTRING
+                'B'.code -> stack.add(readBytes(readIntLE(4).toLong()))  // BINBYTES
+                'C'.code -> stack.add(readBytes(readUnsigned(1)))  // SHORT_BINBYTES
+                0x8e -> stack.add(readBytes(readLongLE()))      // BINBYTES8
+                'S'.code -> stack.add(decodeStringRepr(readLine()))  // STRING
+
+                // Containers
+                '}'.code -> stack.add(LinkedHashMap<Any?, Any?>())  // EMPTY_DICT
+                ']'.code -> stack.add(ArrayList<Any?>())        // EMPTY_LIST
+                ')'.code -> stack.add(emptyList<Any?>())        // EMPTY_TUPLE
+                'd'.code -> {                                   // DICT
+                    val items = popMark()
+                    val dict = LinkedHashMap<Any?, Any?>()
+                    for (i in items.indices step 2) dict[items[i]] = items[i + 1]
+                    stack.add(dict)
+                }
+                'l'.code -> stack.add(ArrayList(popMark()))     // LIST
+                't'.code -> stack.add(popMark())                // TUPLE
+                0x85 -> stack.add(listOf(pop()))                // TUPLE1
+                0x86 -> {                                       // TUPLE2
+                    val second = pop()
+                    stack.add(listOf(pop(), second))
+                }
+                0x87 -> {                                       // TUPLE3
+                    val third = pop()
+                    val second = pop()
+                    stack.add(listOf(pop(), second, third))
+                }
+                'a'.code -> {                                   // APPEND
+                    val value = pop()
+                    asList(stack.last()).add(value)
+                }
+                'e'.code -> {                                   // APPENDS
+                    val items = popMark()
+                    asList(stack.last()).addAll(items)
+                }
+                's'.code -> {                                   // SETITEM
+                    val value = pop()
+                    val key = pop()
+                    asDict(stack.last())[key] = value
+                }
+                'u'.code -> {                                   // SETITEMS
+                    val items = popMark()
+                    val dict = asDict(stack.last())
+                    for (i in items.indices step 2) dict[items[i]] = items[i + 1]
+                }
+
+                // Memo
+                'p'.code -> memo[readLine().toLong()] = stack.last()  // PUT
+                'q'.code -> memo[readUnsigned(1)] = stack.last()      // BINPUT
+                'r'.code -> memo[readIntLE(4).toLong()] = stack.last()  // LONG_BINPUT
+                0x94 -> memo[memo.size.toLong()] = stack.last()       // MEMOIZE
+                'g'.code -> stack.add(getMemo(readLine().toLong()))   // GET
+                'h'.code -> stack.add(getMemo(readUnsigned(1)))       // BINGET
+                'j'.code -> stack.add(getMemo(readIntLE(4).toLong()))  // LONG_BINGET
+
+                // Globals, only used for bytes objects in protocol 2
+                'c'.code -> {                                   // GLOBAL
+                    val module = readLine()
+                    stack.add(PickleGlobal(module, readLine()))
+                }
+                0x93 -> {                                       // STACK_GLOBAL
+                    val name = pop() as? String ?: throw PickleException("Invalid STACK_GLOBAL name")
+                    val module = pop() as? String ?: throw PickleException("Invalid STACK_GLOBAL module")
+                    stack.add(PickleGlobal(module, name))
+                }
+                'R'.code -> {                                   // REDUCE
+                    @Suppress("UNCHECKED_CAST")
+                    val args = pop() as? List<Any?> ?: throw PickleException("Invalid REDUCE arguments")
+                    stack.add(reduce(pop(), args))
+                }
+
+                else -> throw PickleException(
+                    "Unsupported pickle opcode 0x%02x at offset %d".format(opcode, pos - 1)
+                )
+            }
+        }
+        throw PickleException("Pickle data ended without STOP opcode")
+    }
+
+    /**
+     * Evaluate the few callables Python uses to pickle bytes objects
+     */
+    private fun reduce(callable: Any?, args: List<Any?>): Any? {
+        val global = callable as? PickleGlobal ?: throw PickleException("REDUCE on non-global callable")
+        return when ("${global.module}.${global.name}") {
+            // Python 3 pickles bytes as _codecs.encode(str, 'latin1') in protocol < 3
+            "_codecs.encode" -> {
+                val text = args.getOrNull(0) as? String ?: throw PickleException("Invalid _codecs.encode arguments")
+                val encoding = (args.getOrNull(1) as? String ?: "latin1").lowercase()
+                when (encoding) {
+                    "latin1", "latin-1", "iso-8859-1" -> text.toByteArray(Charsets.ISO_8859_1)
+                    "utf8", "utf-8" -> text.toByteArray(Charsets.UTF_8)
+                    else -> throw PickleException("Unsupported encoding in pickle: $encoding")
+                }
+            }
+            "__builtin__.bytes", "builtins.bytes" -> {
+                if (args.isEmpty()) ByteArray(0) else throw PickleException("Unsupported bytes() arguments")
+            }
+            else -> throw PickleException("Unsupported global in pickle: ${global.module}.${global.name}")
+        }
+    }
+
+    private fun pop(): Any? {
+        if (stack.isEmpty()) throw PickleException("Pickle stack underflow")
+        return stack.removeAt(stack.size - 1)
+    }
+
+    private fun popMark(): List<Any?> {
+        val markIndex = stack.lastIndexOf(MARK)
+        if (markIndex < 0) throw PickleException("Pickle MARK not found")
+        val items = ArrayList(stack.subList(markIndex + 1, stack.size))
+        while (stack.size > markIndex) stack.removeAt(stack.size - 1)
+        return items
+    }
+
+    private fun getMemo(index: Long): Any? {
+        if (!memo.containsKey(index)) throw PickleException("Pickle memo key $index not found")
+        return memo[index]
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun asList(value: Any?): MutableList<Any?> =
+        value as? ArrayList<Any?> ?: throw PickleException("APPEND on non-list")
+
+    @Suppress("UNCHECKED_CAST")
+    private fun asDict(value: Any?): MutableMap<Any?, Any?> =
+        value as? LinkedHashMap<Any?, Any?> ?: throw PickleException("SETITEM on non-dict")
+
+    private fun require(count: Long) {
+        if (count < 0 || pos + count > data.size) throw PickleException("Truncated pickle data")
+    }
+
+    private fun readUnsigned(count: Int): Long {
+        require(count.toLong())
+        var value = 0L
+        for (i in 0 until count) {
+            value = value or ((data[pos + i].toLong() and 0xFF) shl (8 * i))
+        }
+        pos += count
+        return value
+    }
+
+    private fun readIntLE(count: Int): Int = readUnsigned(count).toInt()
+
+    private fun readLongLE(): Long = readUnsigned(8)
+
+    /**
+     * Read a little-endian two's complement integer of the given byte length
+     */
+    private fun readLong(count: Int): Any {
+        require(count.toLong())
+        if (count == 0) return 0L
+        val bigEndian = ByteArray(count) { data[pos + count - 1 - it] }
+        pos += count
+        return normalize(BigInteger(bigEndian))
+    }
+
+    private fun normalize(value: BigInteger): Any =
+        if (value.bitLength() < 64) value.toLong() else value
+
+    private fun readBytes(count: Long): ByteArray {
+        require(count)
+        val bytes = data.copyOfRange(pos, pos + count.toInt())
+        pos += count.toInt()
+        return bytes
+    }
+
+    private fun readUtf8(count: Long): String {
+        require(count)
+        val text = String(data, pos, count.toInt(), Charsets.UTF_8)
+        pos += count.toInt()
+        return text
+    }
+
+    private fun readLine(): String {
+        val start = pos
+        while (pos < data.size && data[pos] != '\n'.code.toByte()) pos++
+        if (pos >= data.size) throw PickleException("Truncated pickle line")
+        val line = String(data, start, pos - start, Charsets.ISO_8859_1)
+        pos++
+        return line
+    }
+
+    private fun parseIntLine(line: String): Any = when (line) {
+        "00" -> false
+        "01" -> true
+        else -> normalize(BigInteger(line.removeSuffix("L")))
+    }
+
+    /**
+     * Decode a protocol 0 UNICODE argument (raw-unicode-escape)
+     * Literal characters are latin1 bytes, anything else is a \\uXXXX escape
+     */
+    private fun decodeRawUnicodeEscape(line: String): String {
+        val out = StringBuilder(line.length)
+        var i = 0
+        while (i < line.length) {
+            val c = line[i]
+            if (c == '\\' && i + 1 < line.length && (line[i + 1] == 'u' || line[i + 1] == 'U')) {
+                val digits = if (line[i + 1] == 'u') 4 else 8
+                val hex = line.substring(i + 2, minOf(i + 2 + digits, line.length))
+                if (hex.length != digits) throw PickleException("Invalid unicode escape in pickle")
+                out.appendCodePoint(hex.toInt(16))
+                i += 2 + digits
+            } else {
+                out.append(c)
+                i++
+            }
+        }
+        return out.toString()
+    }
+
+    /**
+     * Decode a protocol 0 STRING argument, which is a quoted Python 2 str repr
+     */
+    private fun decodeStringRepr(line: String): ByteArray {
+        if (line.length < 2 || line.first() != line.last() || (line.first() != '\'' && line.first() != '"')) {
+            throw PickleException("Invalid STRING argument in pickle")
+        }
+        val body = line.substring(1, line.length - 1)
+        val out = java.io.ByteArrayOutputStream(body.length)
+        var i = 0
+        while (i < body.length) {
+            val c = body[i]
+            if (c != '\\' || i + 1 >= body.length) {
+                out.write(c.code)
+                i++
+                continue
+            }
+            val next = body[i + 1]
+            i += 2
+            when (next) {
+                'n' -> out.write('\n'.code)
+                'r' -> out.write('\r'.code)
+                't' -> out.write('\t'.code)
+                '\\' -> out.write('\\'.code)
+                '\'' -> out.write('\''.code)
+                '"' -> out.write('"'.code)
+                'x' -> {
+                    if (i + 2 > body.length) throw PickleException("Invalid hex escape in pickle")
+                    out.write(body.substring(i, i + 2).toInt(16))
+                    i += 2
+                }
+                in '0'..'7' -> {
+                    var end = i
+                    while (end < body.length && end < i + 2 && body[end] in '0'..'7') end++
+                    out.write((next + body.substring(i, end)).toInt(8))
+                    i = end
+                }
+                else -> {
+                    out.write('\\'.code)
+                    out.write(next.code)
+                }
+            }
+        }
+        return out.toByteArray()
+    }
+}
@@ -0,0 +1,97 @@
+package com.renpytool.rpa
+
+import java.io.ByteArrayOutputStream
+import java.math.BigInteger
+
+/**
+ * Minimal pickle writer for RPA indexes, producing protocol 2 like rpatool
+ *
+ * Supported values:
+ * - Map -> dict, List -> list, Pair -> 2-tuple
+ * - Int/Long -> int, String -> str
+ */
+internal object PickleEncoder {
+
+    // Items per SETITEMS/APPENDS batch, as in CPython
+    private const val BATCH_SIZE = 1000
+
+    fun encode(value: Any?): ByteArray {
+        val out = ByteArrayOutputStream()
+        out.write(0x80)     // PROTO
+        out.write(2)
+        write(out, value)
+        out.write('.'.code) // STOP
+        return out.toByteArray()
+    }
+
+    private fun write(out: ByteArrayOutputStream, value: Any?) {
+        when (value) {
+            null -> out.write('N'.code)
+            is Int -> writeLong(out, value.toLong())
+            is Long -> writeLong(out, value)
+            is String -> {
+                val bytes = value.toByteArray(Charsets.UTF_8)
+                out.write('X'.code)                             // BINUNICODE
+                writeIntLE(out, bytes.size)
+                out.write(bytes)
+            }
+            is Pair<*, *> -> {
+                write(out, value.first)
+                write(out, value.second)
+                out.write(0x86)                                 // TUPLE2
+            }
+            is List<*> -> {
+                out.write(']'.code)                             // EMPTY_LIST
+                value.chunked(BATCH_SIZE).forEach { batch ->
+                    out.write('('.code)                         // MARK
+                    batch.forEach { write(out, it) }
+                    out.write('e'.code)                         // APPENDS
+                }
+            }
+            is Map<*, *> -> {
+                out.write('}'.code)                             // EMPTY_DICT
+                value.entries.chunked(BATCH_SIZE).forEach { batch ->
+                    out.write('('.code)                         // MARK
+                    batch.forEach { (k, v) ->
+                        write(out, k)
+                        write(out, v)
+                    }
+                    out.write('u'.code)                         // SETITEMS
+                }
+            }
+            else -> throw PickleException("Cannot pickle ${value::class.java.simpleName}")
+        }
+    }
+
+    private fun writeLong(out: ByteArrayOutputStream, value: Long) {
+        when {
+            value in 0..0xFF -> {
+                out.write('K'.code)                             // BININT1
+                out.write(value.toInt())
+            }
+            value in 0..0xFFFF -> {
+                out.write('M'.code)                             // BININT2
+                out.write(value.toInt() and 0xFF)
+                out.write(value.toInt() ushr 8)
+            }
+            value in Int.MIN_VALUE..Int.MAX_VALUE -> {
+                out.write('J'.code)                             // BININT
+                writeIntLE(out, value.toInt())
+            }
+            else -> {
+                // Minimal little-endian two's complement, as pickle.encode_long
+                val bytes = BigInteger.valueOf(value).toByteArray().reversedArray()
+                out.write(0x8a)                                 // LONG1
+                out.write(bytes.size)
+                out.write(bytes)
+            }
+        }
+    }
+
+    private fun writeIntLE(out: ByteArrayOutputStream, value: Int) {
+        out.write(value and 0xFF)
+        out.write((value ushr 8) and 0xFF)
+        out.write((value ushr 16) and 0xFF)
+        out.write((value ushr 24) and 0xFF)
+    }
+}
@@ -0,0 +1,299 @@
+package com.renpytool.rpa
+
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.WritableByteChannel
+import java.util.zip.InflaterInputStream
+
+/**
+ * Read-only RPA archive backed by a memory-mapped FileChannel
+ * Supports RPA-2.0, RPA-3.0 and RPA-3.2 archives
+ *
+ * Entry data is served from mapped windows of the archive, which are reused while
+ * entries are read in offset order. Window access is not thread-safe; use one
+ * instance per thread or the positional [channel] reads.
+ */
+class RpaArchive private constructor(
+    val file: File,
+    private val raf: RandomAccessFile,
+    val version: RpaVersion,
+    val key: Long,
+    val indexOffset: Long,
+    val entries: Map<String, RpaEntry>
+) : Closeable {
+
+    enum class RpaVersion(val magic: String, val label: String) {
+        V2("RPA-2.0 ", "2"),
+        V3("RPA-3.0 ", "3"),
+        V3_2("RPA-3.2 ", "3.2")
+    }
+
+    companion object {
+        // Size of each memory-mapped window of the archive
+        private const val MAP_WINDOW_SIZE = 64L * 1024 * 1024
+
+        // Longest header line we accept before giving up
+        private const val MAX_HEADER_LENGTH = 256
+
+        /**
+         * Open an archive and load its index, from indexCache when it holds a valid copy
+         *
+         * @throws RpaFormatException if the file is not a supported RPA archive
+         * @throws PickleException if the index uses pickle features we cannot decode
+         */
+        fun open(file: File, indexCache: RpaIndexCache? = null): RpaArchive {
+            val raf = RandomAccessFile(file, "r")
+            try {
+                val header = readHeaderLine(raf)
+                val version = RpaVersion.values().firstOrNull { header.startsWith(it.magic) }
+                    ?: throw RpaFormatException("${file.name} is not a valid Ren'Py archive, or an unsupported version")
+
+                // Fetch metadata: offset and (for v3) the XOR key split into subkeys
+                val values = header.trim().split(Regex("\\s+"))
+                val indexOffset = values.getOrNull(1)?.toLongOrNull(16)
+                    ?: throw RpaFormatException("Invalid archive header in ${file.name}")
+                var key = 0L
+                val keyStart = when (version) {
+                    RpaVersion.V2 -> values.size
+                    RpaVersion.V3 -> 2
+                    RpaVersion.V3_2 -> 3
+                }
+                for (subkey in values.drop(keyStart)) {
+                    key = key xor (subkey.toLongOrNull(16) ?: throw RpaFormatException("Invalid archive key in ${file.name}"))
+                }
+
+                val entries = indexCache?.lookup(file)
+                    ?: readIndex(raf, indexOffset, if (version == RpaVersion.V2) 0L else key).also {
+                        indexCache?.store(file, key, it)
+                    }
+                return RpaArchive(file, raf, version, key, indexOffset, entries)
+            } catch (e: Exception) {
+                raf.close()
+                throw e
+            }
+        }
+
+        private fun readHeaderLine(raf: RandomAccessFile): String {
+            val buffer = ByteArray(MAX_HEADER_LENGTH)
+            raf.seek(0)
+            val read = raf.read(buffer)
+            val end = (0 until maxOf(read, 0)).firstOrNull { buffer[it] == '\n'.code.toByte() }
+                ?: throw RpaFormatException("Missing archive header")
+            return String(buffer, 0, end, Charsets.UTF_8)
+        }
+
+        /**
+         * Inflate and decode the pickled index, removing the v3 key obfuscation
+         */
+        private fun readIndex(raf: RandomAccessFile, offset: Long, key: Long): Map<String, RpaEntry> {
+            if (offset <= 0 || offset >= raf.length()) throw RpaFormatException("Index offset out of range")
+
+            val channel = raf.channel
+            val compressed = channel.map(FileChannel.MapMode.READ_ONLY, offset, raf.length() - offset)
+            val pickled = InflaterInputStream(ByteBufferInputStream(compressed)).use { it.readBytes() }
+
+            val index = PickleDecoder.decode(pickled) as? Map<*, *>
+                ?: throw RpaFormatException("Archive index is not a dictionary")
+
+            val entries = LinkedHashMap<String, RpaEntry>(index.size * 2)
+            for ((rawName, rawParts) in index) {
+                val name = when (rawName) {
+                    is String -> rawName
+                    is ByteArray -> String(rawName, Charsets.UTF_8)
+                    else -> throw RpaFormatException("Invalid file name in archive index")
+                }
+                val parts = (rawParts as? List<*>)?.firstOrNull() as? List<*>
+                    ?: throw RpaFormatException("Invalid index entry for $name")
+
+                val entryOffset = toLong(parts.getOrNull(0)) xor key
+                val entryLength = toLong(parts.getOrNull(1)) xor key
+                val prefix = when (val rawPrefix = parts.getOrNull(2)) {
+                    null -> ByteArray(0)
+                    is ByteArray -> rawPrefix
+                    is String -> rawPrefix.toByteArray(Charsets.ISO_8859_1)
+                    else -> throw RpaFormatException("Invalid prefix for $name")
+                }
+                entries[name] = RpaEntry(name, entryOffset, entryLength, prefix)
+            }
+            return entries
+        }
+
+        private fun toLong(value: Any?): Long = when (value) {
+            is Long -> value
+            is java.math.BigInteger -> value.toLong()
+            else -> throw RpaFormatException("Invalid number in archive index")
+        }
+    }
+
+    /**
+     * Channel for positional reads; safe to share between threads
+     */
+    val channel: FileChannel
+        get() = raf.channel
+
+    val fileSize: Long = raf.length()
+
+    // Currently mapped window
+    private var window: MappedByteBuffer? = null
+    private var windowStart = 0L
+    private var windowEnd = 0L
+
+    /**
+     * Sorted list of files in the archive
+     */
+    fun list(): List<String> = entries.keys.sorted()
+
+    /**
+     * Total extracted size of all files
+     */
+    fun getTotalSize(): Long = entries.values.sumOf { it.length }
+
+    /**
+     * Entries sorted by their physical offset in the archive
+     */
+    fun entriesByOffset(): List<RpaEntry> = entries.values.sortedBy { it.offset }
+
+    /**
+     * Copy an entry (prefix followed by data) into a channel
+     */
+    fun copyEntry(entry: RpaEntry, target: WritableByteChannel) {
+        if (entry.prefix.isNotEmpty()) {
+            writeFully(target, ByteBuffer.wrap(entry.prefix))
+        }
+        copyRange(entry.offset, entry.dataLength, target)
+    }
+
+    /**
+     * Extract an entry to a file, creating parent directories as needed
+     */
+    fun extractTo(entry: RpaEntry, output: File) {
+        output.parentFile?.let { if (!it.isDirectory) it.mkdirs() }
+        RandomAccessFile(output, "rw").use { out ->
+            out.setLength(0)
+            copyEntry(entry, out.channel)
+        }
+    }
+
+    /**
+     * Read an entry fully into memory
+     * Only intended for small entries such as scripts and thumbnails
+     */
+    fun readBytes(entry: RpaEntry): ByteArray {
+        if (entry.length > Int.MAX_VALUE) throw IOException("${entry.name} is too large to read into memory")
+        return openStream(entry).use { it.readBytes() }
+    }
+
+    /**
+     * Open an entry as an InputStream over the mapped archive
+     */
+    fun openStream(entry: RpaEntry): InputStream {
+        checkBounds(entry)
+        val data = if (entry.dataLength <= MAP_WINDOW_SIZE) {
+            ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.dataLength))
+        } else {
+            // Too large for a single mapping, fall back to positional reads
+            ChannelRangeInputStream(channel, entry.offset, entry.dataLength)
+        }
+        return if (entry.prefix.isEmpty()) data else java.io.SequenceInputStream(entry.prefix.inputStream(), data)
+    }
+
+    /**
+     * Copy a byte range of the archive into a channel through the mapped windows
+     */
+    private fun copyRange(position: Long, count: Long, target: WritableByteChannel) {
+        if (position < 0 || count < 0 || position + count > fileSize) {
+            throw IOException("Entry range $position+$count is outside the archive (size $fileSize)")
+        }
+        var current = position
+        val end = position + count
+        while (current < end) {
+            val mapped = mapWindow(current)
+            val slice = mapped.duplicate()
+            slice.position((current - windowStart).toInt())
+            slice.limit((minOf(end, windowEnd) - windowStart).toInt())
+            current += slice.remaining()
+            writeFully(target, slice)
+        }
+    }
+
+    /**
+     * Map the window containing the given position, reusing the current one if possible
+     */
+    private fun mapWindow(position: Long): MappedByteBuffer {
+        window?.let { if (position >= windowStart && position < windowEnd) return it }
+        windowStart = position - position % MAP_WINDOW_SIZE
+        windowEnd = minOf(windowStart + MAP_WINDOW_SIZE, fileSize)
+        val mapped = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart)
+        window = mapped
+        return mapped
+    }
+
+    internal fun checkBounds(entry: RpaEntry) {
+        if (entry.offset < 0 || entry.dataLength < 0 || entry.offset + entry.dataLength > fileSize) {
+            throw IOException("${entry.name} points outside the archive")
+        }
+    }
+
+    private fun writeFully(target: WritableByteChannel, buffer: ByteBuffer) {
+        while (buffer.hasRemaining()) {
+            target.write(buffer)
+        }
+    }
+
+    override fun close() {
+        window = null
+        raf.close()
+    }
+}
+
+/**
+ * Thrown when a file is not a readable RPA archive
+ */
+class RpaFormatException(message: String) : IOException(message)
+
+/**
+ * InputStream view over a ByteBuffer
+ */
+internal class ByteBufferInputStream(private val buffer: ByteBuffer) : InputStream() {
+    override fun read(): Int = if (buffer.hasRemaining()) buffer.get().toInt() and 0xFF else -1
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        if (len == 0) return 0
+        if (!buffer.hasRemaining()) return -1
+        val count = minOf(len, buffer.remaining())
+        buffer.get(b, off, count)
+        return count
+    }
+
+    override fun available(): Int = buffer.remaining()
+}
+
+/**
+ * InputStream over a byte range of a FileChannel using positional reads
+ */
+internal class ChannelRangeInputStream(
+    private val channel: FileChannel,
+    private var position: Long,
+    private var remaining: Long
+) : InputStream() {
+    override fun read(): Int {
+        val single = ByteArray(1)
+        return if (read(single, 0, 1) == 1) single[0].toInt() and 0xFF else -1
+    }
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        if (len == 0) return 0
+        if (remaining <= 0) return -1
+        val count = channel.read(ByteBuffer.wrap(b, off, minOf(len.toLong(), remaining).toInt()), position)
+        if (count <= 0) throw IOException("Unexpected end of archive")
+        position += count
+        remaining -= count
+        return count
+    }
+}
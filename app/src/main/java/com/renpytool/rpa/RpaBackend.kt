@@ -0,0 +1,287 @@
+package com.renpytool.rpa
+
+import android.content.Context
+import android.os.storage.StorageManager
+import android.system.ErrnoException
+import android.system.Os
+import android.util.Log
+import com.chaquo.python.PyObject
+import com.chaquo.python.Python
+import com.renpytool.ProgressTracker
+import java.io.File
+
+/**
+ * Entry point for reading RPA archives (info, listing, extraction)
+ * Uses the JVM reader when enabled in settings and falls back to the Python
+ * rpa_wrapper module for archives the JVM reader cannot parse
+ */
+class RpaBackend(private val context: Context) {
+
+    companion object {
+        private const val TAG = "RpaBackend"
+        const val PREF_USE_NATIVE_READER = "use_native_rpa_reader"
+
+        // Number of extraction workers, 0 = auto-tune
+        const val PREF_EXTRACT_THREADS = "rpa_extract_threads"
+
+        // Store identical files once when creating archives
+        const val PREF_DEDUP = "rpa_dedup"
+
+        // Page size entry data is aligned to when creating archives, 0 = packed
+        const val PREF_ALIGNMENT = "rpa_alignment"
+
+        // Split created archives into numbered volumes of at most this many MB, 0 = single archive
+        const val PREF_VOLUME_SIZE_MB = "rpa_volume_size_mb"
+        const val VOLUME_SIZE_STEP_MB = 512
+
+        // Archives extracted at once during batch extraction
+        const val PREF_BATCH_CONCURRENCY = "rpa_batch_concurrency"
+        const val DEFAULT_BATCH_CONCURRENCY = 2
+
+        fun isNativeReaderEnabled(context: Context): Boolean {
+            return context.getSharedPreferences("RentoolPrefs", Context.MODE_PRIVATE)
+                .getBoolean(PREF_USE_NATIVE_READER, true)
+        }
+    }
+
+    private val indexCache = RpaIndexCache(RpaIndexCache.directory(context))
+
+    private val rpaModule: PyObject by lazy {
+        Python.getInstance().getModule("rpa_wrapper").also {
+            it.callAttr("set_cache_dir", RpaIndexCache.directory(context).absolutePath)
+        }
+    }
+
+    /**
+     * Get the file count and total extracted size of an archive
+     * With a filter expression (see [RpaFilter]) only the matching files are counted
+     */
+    fun getExtractionInfo(rpaFilePath: String, filterExpression: String = ""): RpaExtractionInfo {
+        val filter = try {
+            filterExpression.takeIf { it.isNotBlank() }?.let { RpaFilter.parse(it) }
+        } catch (e: IllegalArgumentException) {
+            return RpaExtractionInfo(false, 0, 0, "Invalid filter: ${e.message}")
+        }
+
+        openNative(rpaFilePath)?.use { archive ->
+            val selected = archive.entries.values.filter { filter == null || filter.matches(it) }
+            val totalSize = selected.sumOf { it.length }
+            val fileCount = selected.size
+            return RpaExtractionInfo(
+                success = true,
+                totalSize = totalSize,
+                fileCount = fileCount,
+                message = "Archive contains $fileCount files, total extracted size: $totalSize bytes"
+            )
+        }
+
+        val result = rpaModule.callAttr("get_extraction_info", rpaFilePath, filterExpression)
+        return RpaExtractionInfo(
+            success = result.callAttr("__getitem__", "success").toBoolean(),
+            totalSize = result.callAttr("__getitem__", "total_size").toLong(),
+            fileCount = result.callAttr("__getitem__", "file_count").toInt(),
+            message = result.callAttr("__getitem__", "message").toString()
+        )
+    }
+
+    /**
+     * Sorted list of files in an archive
+     */
+    fun listFiles(rpaFilePath: String): List<String> {
+        openNative(rpaFilePath)?.use { return it.list() }
+
+        val result = rpaModule.callAttr("list_rpa_files", rpaFilePath)
+        if (!result.callAttr("__getitem__", "success").toBoolean()) {
+            throw Exception(result.callAttr("__getitem__", "message").toString())
+        }
+        return result.callAttr("__getitem__", "files").asList().map { it.toString() }
+    }
+
+    /**
+     * Extract an archive, writing progress to the tracker's progress file
+     * With a filter expression (see [RpaFilter]) only the matching files are extracted
+     */
+    suspend fun extract(
+        rpaFilePath: String,
+        extractDirPath: String,
+        tracker: ProgressTracker,
+        batchIndex: Int = 0,
+        batchTotal: Int = 0,
+        batchFileName: String = "",
+        filterExpression: String = ""
+    ): RpaResult {
+        openNative(rpaFilePath)?.use { archive ->
+            val threads = context.getSharedPreferences("RentoolPrefs", Context.MODE_PRIVATE)
+                .getInt(PREF_EXTRACT_THREADS, 0)
+            val filter = filterExpression.takeIf { it.isNotBlank() }?.let { RpaFilter.parse(it) }
+            return RpaExtractor(tracker, threads).extract(
+                archive, File(extractDirPath), batchIndex, batchTotal, batchFileName, filter
+            )
+        }
+
+        val result = rpaModule.callAttr(
+            "extract_rpa",
+            rpaFilePath,
+            extractDirPath,
+            tracker.progressFilePath,
+            batchIndex,
+            batchTotal,
+            batchFileName,
+            filterExpression
+        ) ?: throw Exception("Python function returned null")
+
+        val success = result.callAttr("__getitem__", "success").toBoolean()
+        return RpaResult(
+            success = success,
+            message = result.callAttr("__getitem__", "message").toString(),
+            files = result.callAttr("__getitem__", "files").asList().map { it.toString() },
+            bytes = if (success) result.callAttr("__getitem__", "bytes").toLong() else 0L,
+            megabytesPerSecond = if (success) result.callAttr("__getitem__", "mb_per_second").toDouble() else 0.0
+        )
+    }
+
+    /**
+     * Extract several archives into one directory, resolving overlapping paths the way
+     * Ren'Py does (the archive whose name sorts last wins) so each path is written once
+     * Uses the JVM reader only if it can open every archive, otherwise the Python fallback
+     */
+    suspend fun extractBatch(
+        rpaFilePaths: List<String>,
+        extractDirPath: String,
+        tracker: ProgressTracker,
+        filterExpression: String = ""
+    ): RpaResult {
+        val archives = ArrayList<RpaArchive>(rpaFilePaths.size)
+        try {
+            for (path in rpaFilePaths) {
+                archives.add(openNative(path) ?: break)
+            }
+            if (archives.size == rpaFilePaths.size) {
+                val prefs = context.getSharedPreferences("RentoolPrefs", Context.MODE_PRIVATE)
+                val threads = prefs.getInt(PREF_EXTRACT_THREADS, 0)
+                val concurrency = prefs.getInt(PREF_BATCH_CONCURRENCY, DEFAULT_BATCH_CONCURRENCY)
+                val filter = filterExpression.takeIf { it.isNotBlank() }?.let { RpaFilter.parse(it) }
+                return RpaBatchExtractor(tracker, threads, concurrency) { storageVolume(it, concurrency) }
+                    .extract(archives, File(extractDirPath), filter)
+            }
+        } finally {
+            archives.forEach { it.close() }
+        }
+
+        val result = rpaModule.callAttr(
+            "extract_rpa_batch",
+            rpaFilePaths.toTypedArray(),
+            extractDirPath,
+            tracker.progressFilePath,
+            filterExpression
+        ) ?: throw Exception("Python function returned null")
+
+        val success = result.callAttr("__getitem__", "success").toBoolean()
+        return RpaResult(
+            success = success,
+            message = result.callAttr("__getitem__", "message").toString(),
+            files = result.callAttr("__getitem__", "files").asList().map { it.toString() },
+            bytes = if (success) result.callAttr("__getitem__", "bytes").toLong() else 0L,
+            megabytesPerSecond = if (success) result.callAttr("__getitem__", "mb_per_second").toDouble() else 0.0
+        )
+    }
+
+    /**
+     * Check an archive for truncation and corruption without extracting it (see [RpaVerifier])
+     * The index is read from the archive itself, never from the index cache.
+     * Only the last archive of a batch (batchIndex == batchTotal) reports a final status.
+     */
+    suspend fun verify(
+        rpaFilePath: String,
+        tracker: ProgressTracker,
+        saveManifest: Boolean = false,
+        batchIndex: Int = 0,
+        batchTotal: Int = 0
+    ): RpaVerifyResult {
+        openNative(rpaFilePath, useCache = false)?.use { archive ->
+            val threads = context.getSharedPreferences("RentoolPrefs", Context.MODE_PRIVATE)
+                .getInt(PREF_EXTRACT_THREADS, 0)
+            return RpaVerifier(tracker, threads).verify(archive, saveManifest, batchIndex, batchTotal)
+        }
+
+        val result = rpaModule.callAttr(
+            "verify_rpa",
+            rpaFilePath,
+            tracker.progressFilePath,
+            saveManifest,
+            batchIndex,
+            batchTotal
+        ) ?: throw Exception("Python function returned null")
+
+        return RpaVerifyResult(
+            success = result.callAttr("__getitem__", "success").toBoolean(),
+            message = result.callAttr("__getitem__", "message").toString(),
+            problems = result.callAttr("__getitem__", "problems").asList().map { it.toString() }
+        )
+    }
+
+    /**
+     * Write a patch archive with the files of modifiedPath that differ from the base archive
+     * (see [RpaPatchBuilder]). modifiedPath is a game folder or another version of the archive.
+     * Patches are built on the JVM reader only; there is no Python fallback.
+     */
+    suspend fun createPatch(
+        basePath: String,
+        modifiedPath: String,
+        tracker: ProgressTracker
+    ): RpaPatchResult {
+        val prefs = context.getSharedPreferences("RentoolPrefs", Context.MODE_PRIVATE)
+        val modified = File(modifiedPath)
+        return openForPatch(basePath).use { base ->
+            val modifiedArchive = if (modified.isDirectory) null else openForPatch(modifiedPath)
+            modifiedArchive.use {
+                RpaPatchBuilder(tracker, RpaPatchBuilder.directory(context), prefs.getInt(PREF_EXTRACT_THREADS, 0))
+                    .build(
+                        base,
+                        modified,
+                        modifiedArchive = modifiedArchive,
+                        alignment = prefs.getInt(PREF_ALIGNMENT, 0),
+                        dedup = prefs.getBoolean(PREF_DEDUP, false)
+                    )
+            }
+        }
+    }
+
+    private fun openForPatch(rpaFilePath: String): RpaArchive {
+        if (!isNativeReaderEnabled(context)) {
+            throw Exception("Creating patches needs the Fast Archive Reader, enable it in Settings")
+        }
+        return openNative(rpaFilePath)
+            ?: throw Exception("Fast Archive Reader could not read ${File(rpaFilePath).name}")
+    }
+
+    /**
+     * Volume of a file for batch scheduling
+     * Removable volumes (SD cards, USB drives) are limited to one stream at a time.
+     */
+    private fun storageVolume(file: File, concurrency: Int): StorageVolume {
+        val existing = generateSequence(file.absoluteFile) { it.parentFile }.firstOrNull { it.exists() } ?: file
+        val id = try {
+            Os.stat(existing.path).st_dev
+        } catch (e: ErrnoException) {
+            Log.w(TAG, "Could not stat ${existing.path}: ${e.message}")
+            -1L
+        }
+        val removable = context.getSystemService(StorageManager::class.java)
+            ?.getStorageVolume(existing)?.isRemovable ?: false
+        return StorageVolume(id, if (removable) 1 else concurrency)
+    }
+
+    /**
+     * Open an archive with the JVM reader, or return null to use the Python fallback
+     */
+    private fun openNative(rpaFilePath: String, useCache: Boolean = true): RpaArchive? {
+        if (!isNativeReaderEnabled(context)) return null
+        return try {
+            RpaArchive.open(File(rpaFilePath), if (useCache) indexCache else null)
+        } catch (e: Exception) {
+            Log.w(TAG, "JVM reader could not open $rpaFilePath, using Python: ${e.message}")
+            null
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.renpytool.rpa
+
+import android.util.Log
+import com.renpytool.ProgressData
+import com.renpytool.ProgressTracker
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.io.File
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Storage volume a file lives on
+ *
+ * @param id Device id; files with the same id share the volume's bandwidth
+ * @param maxStreams Extractions allowed to read from or write to the volume at once
+ */
+data class StorageVolume(val id: Long, val maxStreams: Int)
+
+/**
+ * Extracts several archives into one directory the way Ren'Py overlays them at runtime
+ *
+ * Ren'Py searches archives in reverse alphabetical order of their names, so when two
+ * archives contain the same path the one whose name sorts last wins. All indexes are
+ * loaded before anything is written and each path is extracted exactly once, from the
+ * archive that wins it, instead of extracting every archive and overwriting.
+ *
+ * Since no two archives write the same path, up to [concurrency] archives are extracted
+ * at once. Each extraction holds a stream on its source and destination volumes, and a
+ * volume never carries more streams than [StorageVolume.maxStreams] (1 for a slow SD
+ * card), so archives sharing a slow volume are extracted one after another.
+ */
+class RpaBatchExtractor(
+    private val tracker: ProgressTracker?,
+    threads: Int = 0,
+    private val concurrency: Int = 1,
+    private val volumeOf: (File) -> StorageVolume = { StorageVolume(0, concurrency) }
+) {
+
+    companion object {
+        private const val TAG = "RpaBatchExtractor"
+
+        /**
+         * Archives in Ren'Py load order, lowest precedence first
+         * Ren'Py sorts full file names, extension included, so archive-compressed.rpa
+         * comes before archive.rpa ('-' sorts before '.').
+         */
+        fun precedenceOrder(archives: List<RpaArchive>): List<RpaArchive> {
+            return archives.sortedWith(compareBy<RpaArchive>({ it.file.name }, { it.file.path }))
+        }
+
+        /**
+         * Resolve which archive provides each path
+         *
+         * @return Winning entries per archive (in the order given), and the number of overridden entries
+         */
+        fun resolve(archives: List<RpaArchive>, filter: RpaFilter?): Pair<List<List<RpaEntry>>, Int> {
+            val winners = HashMap<String, Int>()
+            var overridden = 0
+            val order = precedenceOrder(archives).map { archive -> archives.indexOfFirst { it === archive } }
+            for (archiveIndex in order) {
+                for (entry in archives[archiveIndex].entries.values) {
+                    if (filter != null && !filter.matches(entry)) continue
+                    if (winners.put(entry.name, archiveIndex) != null) overridden++
+                }
+            }
+
+            val selected = archives.mapIndexed { archiveIndex, archive ->
+                archive.entriesByOffset().filter { winners[it.name] == archiveIndex }
+            }
+            return selected to overridden
+        }
+    }
+
+    private val extractor = RpaExtractor(tracker, threads)
+
+    /**
+     * Extract the archives into outputDir, reporting one combined file count
+     * Archives start in the order given, as volume limits allow.
+     */
+    suspend fun extract(archives: List<RpaArchive>, outputDir: File, filter: RpaFilter? = null): RpaResult {
+        val (selected, overridden) = resolve(archives, filter)
+        val batch = BatchProgress(
+            archiveCount = archives.size,
+            totalFiles = selected.sumOf { it.size },
+            totalBytes = selected.sumOf { entries -> entries.sumOf { it.length } }
+        )
+
+        // One stream limit per volume; an archive holds a stream on its source and destination
+        val destination = volumeOf(outputDir)
+        val volumes = HashMap<Long, Semaphore>()
+        fun streams(volume: StorageVolume) = volumes.getOrPut(volume.id) {
+            Semaphore(volume.maxStreams.coerceIn(1, concurrency.coerceAtLeast(1)))
+        }
+        val slots = Semaphore(concurrency.coerceAtLeast(1))
+        val failure = AtomicReference<String?>(null)
+
+        val results = coroutineScope {
+            archives.mapIndexed { index, archive ->
+                // Streams are acquired in volume id order so two archives never wait on each other
+                val locks = listOf(volumeOf(archive.file), destination)
+                    .distinctBy { it.id }
+                    .sortedBy { it.id }
+                    .map { streams(it) }
+
+                // Volume streams come first, so an archive waiting on a busy card holds no slot
+                async {
+                    withStreams(locks) {
+                        slots.withPermit {
+                            if (failure.get() != null) return@withPermit null
+                            batch.startedArchives.incrementAndGet()
+                            val result = extractor.extractEntries(
+                                archive, selected[index], outputDir,
+                                batchIndex = index + 1,
+                                batchTotal = archives.size,
+                                batchFileName = archive.file.name,
+                                batch = batch
+                            )
+                            if (!result.success) failure.compareAndSet(null, "${archive.file.name}: ${result.message}")
+                            result
+                        }
+                    }
+                }
+            }.awaitAll().filterNotNull()
+        }
+
+        val files = results.flatMap { it.files }
+        val bytes = batch.processedBytes.get()
+        val errorMsg = failure.get()
+        if (errorMsg != null) {
+            progress(batch, "failed", "", errorMsg)
+            return RpaResult(false, errorMsg, files, bytes)
+        }
+
+        val elapsedMs = System.currentTimeMillis() - batch.startTime
+        val megabytesPerSecond = if (elapsedMs > 0) bytes / (1024.0 * 1024.0) / (elapsedMs / 1000.0) else 0.0
+        progress(batch, "completed", "Complete")
+        return RpaResult(
+            success = true,
+            message = String.format(
+                java.util.Locale.US, "Extracted %d files from %d archives, %d overridden (%.1f MB/s)",
+                files.size, archives.size, overridden, megabytesPerSecond
+            ),
+            files = files,
+            bytes = bytes,
+            megabytesPerSecond = megabytesPerSecond
+        )
+    }
+
+    private suspend fun <T> withStreams(locks: List<Semaphore>, block: suspend () -> T): T {
+        if (locks.isEmpty()) return block()
+        return locks.first().withPermit { withStreams(locks.drop(1), block) }
+    }
+
+    private fun progress(batch: BatchProgress, status: String, currentFile: String, errorMessage: String = "") {
+        val data = ProgressData().apply {
+            this.operation = "extract"
+            this.status = status
+            this.totalFiles = batch.totalFiles
+            this.processedFiles = batch.processedFiles.get()
+            this.currentFile = currentFile
+            this.startTime = batch.startTime
+            this.lastUpdateTime = System.currentTimeMillis()
+            this.errorMessage = errorMessage
+            this.totalBytes = batch.totalBytes
+            this.processedBytes = batch.processedBytes.get()
+            this.currentBatchIndex = batch.startedArchives.get()
+            this.totalBatchCount = batch.archiveCount
+        }
+        try {
+            tracker?.writeProgress(data)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to update progress", e)
+        }
+    }
+}
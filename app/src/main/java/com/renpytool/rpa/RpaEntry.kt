@@ -0,0 +1,22 @@
+package com.renpytool.rpa
+
+/**
+ * A single file stored in an RPA archive
+ *
+ * @param name Path of the file inside the archive
+ * @param offset Offset of the file data in the archive
+ * @param length Total file length, including the inline prefix
+ * @param prefix Bytes stored in the index instead of the data section (usually empty)
+ */
+class RpaEntry(
+    val name: String,
+    val offset: Long,
+    val length: Long,
+    val prefix: ByteArray
+) {
+    /**
+     * Number of bytes stored in the archive data section
+     */
+    val dataLength: Long
+        get() = length - prefix.size
+}
@@ -0,0 +1,365 @@
+package com.renpytool.rpa
+
+import android.util.Log
+import com.renpytool.ProgressData
+import com.renpytool.ProgressTracker
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.Collections
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Result of an RPA extraction, mirroring the dict returned by rpa_wrapper.extract_rpa
+ */
+data class RpaResult(
+    val success: Boolean,
+    val message: String,
+    val files: List<String>,
+    val bytes: Long = 0,
+    val megabytesPerSecond: Double = 0.0
+)
+
+/**
+ * Archive summary, mirroring the dict returned by rpa_wrapper.get_extraction_info
+ */
+data class RpaExtractionInfo(
+    val success: Boolean,
+    val totalSize: Long,
+    val fileCount: Int,
+    val message: String
+)
+
+/**
+ * Progress shared by the extractions of a batch, so archives extracted one after
+ * another or concurrently report one combined count
+ * Extractions that are part of a batch never report "completed"; the batch does.
+ */
+class BatchProgress(
+    val archiveCount: Int,
+    val totalFiles: Int,
+    val totalBytes: Long,
+    val startTime: Long = System.currentTimeMillis()
+) {
+    val processedFiles = AtomicInteger(0)
+    val processedBytes = AtomicLong(0)
+
+    // Archives started so far, reported as the current batch index
+    val startedArchives = AtomicInteger(0)
+}
+
+/**
+ * Extracts RPA archives on the JVM
+ * Entries are handed out in offset order to a pool of workers that copy them with
+ * positional FileChannel reads, so workers never share a seek pointer
+ *
+ * @param threads Number of workers, or 0 to auto-tune the worker count while extracting
+ */
+class RpaExtractor(
+    private val tracker: ProgressTracker?,
+    private val threads: Int = 0
+) {
+
+    companion object {
+        private const val TAG = "RpaExtractor"
+
+        // Per-worker direct buffer used for positional reads
+        private const val BUFFER_SIZE = 1024 * 1024
+
+        // Entries at least this large are copied kernel-side with transferTo
+        private const val ZERO_COPY_MIN_BYTES = 1024L * 1024
+
+        // Most bytes per transferTo call, so progress of large entries shows while they copy
+        private const val ZERO_COPY_CHUNK_BYTES = 8L * 1024 * 1024
+
+        // Upper bound for the auto-tuned worker count
+        private const val MAX_AUTO_WORKERS = 8
+
+        // How often progress is written and throughput is sampled
+        private const val SAMPLE_INTERVAL_MS = 500L
+
+        // An added worker must raise throughput by this factor to be kept
+        private const val SCALING_THRESHOLD = 1.10
+
+        // How long a parked worker waits before checking whether it may run again
+        private const val PARKED_DELAY_MS = 50L
+    }
+
+    /**
+     * Extract the entries of an opened archive selected by filter (all if null) into outputDir
+     */
+    suspend fun extract(
+        archive: RpaArchive,
+        outputDir: File,
+        batchIndex: Int = 0,
+        batchTotal: Int = 0,
+        batchFileName: String = "",
+        filter: RpaFilter? = null
+    ): RpaResult {
+        val entries = archive.entriesByOffset().let { all ->
+            if (filter == null) all else all.filter { filter.matches(it) }
+        }
+        return extractEntries(archive, entries, outputDir, batchIndex, batchTotal, batchFileName)
+    }
+
+    /**
+     * Extract the given entries of an opened archive into outputDir
+     * Entries should be in offset order (see [RpaArchive.entriesByOffset])
+     * With a shared [BatchProgress], progress is reported for the whole batch
+     */
+    suspend fun extractEntries(
+        archive: RpaArchive,
+        entries: List<RpaEntry>,
+        outputDir: File,
+        batchIndex: Int = 0,
+        batchTotal: Int = 0,
+        batchFileName: String = "",
+        batch: BatchProgress? = null
+    ): RpaResult = withContext(Dispatchers.IO) {
+        val extractStartTime = System.currentTimeMillis()
+        val startTime = batch?.startTime ?: extractStartTime
+        val totalFiles = entries.size
+        val totalBytes = entries.sumOf { it.length }
+        val extractedFiles = Collections.synchronizedList(ArrayList<String>(totalFiles))
+        val processedBytes = AtomicLong(0)
+
+        fun progress(status: String, currentFile: String, errorMessage: String = "") {
+            val data = ProgressData().apply {
+                this.operation = "extract"
+                this.status = status
+                this.totalFiles = batch?.totalFiles ?: totalFiles
+                this.processedFiles = batch?.processedFiles?.get() ?: extractedFiles.size
+                this.currentFile = currentFile
+                this.startTime = startTime
+                this.lastUpdateTime = System.currentTimeMillis()
+                this.errorMessage = errorMessage
+                this.totalBytes = batch?.totalBytes ?: totalBytes
+                this.processedBytes = batch?.processedBytes?.get() ?: processedBytes.get()
+                this.currentBatchIndex = batch?.startedArchives?.get() ?: batchIndex
+                this.totalBatchCount = batch?.archiveCount ?: batchTotal
+                this.currentBatchFileName = batchFileName
+            }
+            try {
+                tracker?.writeProgress(data)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to update progress", e)
+            }
+        }
+
+        progress("in_progress", "Loading archive...")
+
+        // Resolve outputs and create directories up front so workers only write files
+        val outputs = try {
+            prepareOutputs(entries, outputDir)
+        } catch (e: Exception) {
+            val errorMsg = "Error preparing output: ${e.message}"
+            Log.e(TAG, errorMsg, e)
+            progress("failed", "", errorMsg)
+            return@withContext RpaResult(false, errorMsg, emptyList())
+        }
+
+        val autoTune = threads <= 0
+        val maxWorkers = if (autoTune) {
+            minOf(Runtime.getRuntime().availableProcessors(), MAX_AUTO_WORKERS)
+        } else {
+            threads
+        }
+        // Workers with an id at or above this limit stay parked
+        val activeWorkers = AtomicInteger(if (autoTune) 1 else maxWorkers)
+        val nextEntry = AtomicInteger(0)
+        val failure = AtomicReference<String?>(null)
+        val currentFile = AtomicReference("")
+
+        val workers = (0 until maxWorkers).map { workerId ->
+            launch {
+                val buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+                while (failure.get() == null) {
+                    if (workerId >= activeWorkers.get()) {
+                        if (nextEntry.get() >= totalFiles) break
+                        delay(PARKED_DELAY_MS)
+                        continue
+                    }
+
+                    val index = nextEntry.getAndIncrement()
+                    if (index >= totalFiles) break
+                    ensureActive()
+
+                    val entry = entries[index]
+                    currentFile.set(entry.name)
+                    try {
+                        copyEntry(archive, entry, outputs[index], buffer) { copied ->
+                            processedBytes.addAndGet(copied)
+                            batch?.processedBytes?.addAndGet(copied)
+                        }
+                    } catch (e: IOException) {
+                        // Error occurred - stop all workers and report
+                        val errorMsg = "Error extracting ${entry.name}: ${e.message}"
+                        Log.e(TAG, errorMsg, e)
+                        failure.compareAndSet(null, errorMsg)
+                        break
+                    }
+
+                    extractedFiles.add(entry.name)
+                    batch?.processedFiles?.incrementAndGet()
+                }
+            }
+        }
+
+        // Write progress and tune the worker count while the workers run
+        val monitor = launch {
+            var tuning = autoTune && maxWorkers > 1
+            var lastBytes = 0L
+            var bestRate = 0.0
+            while (isActive) {
+                delay(SAMPLE_INTERVAL_MS)
+                progress("in_progress", currentFile.get())
+
+                val bytes = processedBytes.get()
+                val rate = (bytes - lastBytes).toDouble() / SAMPLE_INTERVAL_MS
+                lastBytes = bytes
+                // A sample without progress says nothing about scaling, e.g. while storage stalls
+                if (!tuning || rate == 0.0) continue
+
+                val current = activeWorkers.get()
+                if (rate > bestRate * SCALING_THRESHOLD) {
+                    bestRate = rate
+                    if (current < maxWorkers) {
+                        activeWorkers.incrementAndGet()
+                    } else {
+                        tuning = false
+                    }
+                } else {
+                    // The last worker did not help, so storage is the bottleneck
+                    if (current > 1) activeWorkers.decrementAndGet()
+                    tuning = false
+                    Log.i(TAG, "Throughput stopped scaling, using ${activeWorkers.get()} workers")
+                }
+            }
+        }
+
+        workers.joinAll()
+        monitor.cancelAndJoin()
+
+        val errorMsg = failure.get()
+        if (errorMsg != null) {
+            progress("failed", currentFile.get(), errorMsg)
+            return@withContext RpaResult(false, errorMsg, extractedFiles.toList())
+        }
+
+        val elapsedMs = System.currentTimeMillis() - extractStartTime
+        val megabytesPerSecond = if (elapsedMs > 0) {
+            (processedBytes.get() / (1024.0 * 1024.0)) * 1000.0 / elapsedMs
+        } else {
+            0.0
+        }
+
+        if (batch == null) progress("completed", "Complete")
+
+        RpaResult(
+            success = true,
+            message = String.format(java.util.Locale.US, "Successfully extracted %d files (%.1f MB/s)", extractedFiles.size, megabytesPerSecond),
+            files = extractedFiles.toList(),
+            bytes = processedBytes.get(),
+            megabytesPerSecond = megabytesPerSecond
+        )
+    }
+
+    /**
+     * Resolve the output file of every entry and create the directories they need
+     */
+    private fun prepareOutputs(entries: List<RpaEntry>, outputDir: File): List<File> {
+        if (!outputDir.exists()) {
+            outputDir.mkdirs()
+        }
+        val outputRoot = outputDir.toPath().toAbsolutePath().normalize()
+        val createdDirs = HashSet<File>()
+
+        return entries.map { entry ->
+            val output = resolveOutput(outputRoot, entry.name)
+            output.parentFile?.let { parent ->
+                // Extractors of a batch may create the same directory concurrently,
+                // so a failed mkdirs only counts if the directory is still missing
+                if (createdDirs.add(parent) && !parent.mkdirs() && !parent.isDirectory) {
+                    throw IOException("Failed to create directory: ${parent.absolutePath}")
+                }
+            }
+            output
+        }
+    }
+
+    /**
+     * Copy an entry to its output file, passing the size of each copied chunk to copied
+     * Large entries go through FileChannel.transferTo, smaller ones through the worker's buffer
+     */
+    private fun copyEntry(
+        archive: RpaArchive,
+        entry: RpaEntry,
+        output: File,
+        buffer: ByteBuffer,
+        copied: (Long) -> Unit
+    ) {
+        archive.checkBounds(entry)
+        val channel = archive.channel
+
+        FileOutputStream(output).channel.use { out ->
+            if (entry.prefix.isNotEmpty()) {
+                writeFully(out, ByteBuffer.wrap(entry.prefix))
+                copied(entry.prefix.size.toLong())
+            }
+
+            var position = entry.offset
+            val end = entry.offset + entry.dataLength
+            if (entry.dataLength >= ZERO_COPY_MIN_BYTES) {
+                while (position < end) {
+                    val sent = channel.transferTo(position, minOf(end - position, ZERO_COPY_CHUNK_BYTES), out)
+                    if (sent <= 0) throw IOException("Unexpected end of archive")
+                    position += sent
+                    copied(sent)
+                }
+                return
+            }
+
+            while (position < end) {
+                buffer.clear()
+                if (end - position < buffer.capacity()) {
+                    buffer.limit((end - position).toInt())
+                }
+                val read = channel.read(buffer, position)
+                if (read <= 0) throw IOException("Unexpected end of archive")
+                position += read
+                buffer.flip()
+                writeFully(out, buffer)
+                copied(read.toLong())
+            }
+        }
+    }
+
+    private fun writeFully(target: FileChannel, buffer: ByteBuffer) {
+        while (buffer.hasRemaining()) {
+            target.write(buffer)
+        }
+    }
+
+    /**
+     * Resolve an archive path below the output directory, rejecting paths that escape it
+     */
+    private fun resolveOutput(outputRoot: java.nio.file.Path, name: String): File {
+        val resolved = outputRoot.resolve(name.trimStart('/')).normalize()
+        if (!resolved.startsWith(outputRoot)) {
+            throw IOException("Entry path escapes the output directory")
+        }
+        return resolved.toFile()
+    }
+}
@@ -0,0 +1,102 @@
+package com.renpytool.rpa
+
+/**
+ * Entry filter for selective extraction, evaluated against the index only
+ * Mirrors rpa_filter.py so both readers select the same files.
+ *
+ * Expressions are whitespace-separated terms:
+ * - `*.rpyc` glob; without a '/' it matches the file name, otherwise the whole path
+ * - `**` also matches across directories, '*' and '?' stop at '/'
+ * - `ext:png,jpg` extension set
+ * - `min:10K` / `max:5M` size bounds (K, M and G are binary multiples)
+ *
+ * A file is selected when it matches any glob or extension term (or there are none)
+ * and lies within the size bounds.
+ */
+class RpaFilter private constructor(
+    val expression: String,
+    private val pathGlobs: List<Regex>,
+    private val nameGlobs: List<Regex>,
+    private val extensions: Set<String>,
+    private val minSize: Long?,
+    private val maxSize: Long?
+) {
+
+    companion object {
+        private val SIZE_PATTERN = Regex("^(\\d+)([KMG]?)B?$")
+
+        /**
+         * Parse a filter expression
+         *
+         * @throws IllegalArgumentException if a size bound is not a valid size
+         */
+        fun parse(expression: String): RpaFilter {
+            val pathGlobs = mutableListOf<Regex>()
+            val nameGlobs = mutableListOf<Regex>()
+            val extensions = mutableSetOf<String>()
+            var minSize: Long? = null
+            var maxSize: Long? = null
+
+            for (term in expression.split(Regex("\\s+")).filter { it.isNotEmpty() }) {
+                val lower = term.lowercase()
+                when {
+                    lower.startsWith("ext:") -> term.substring(4).split(',')
+                        .filter { it.isNotEmpty() }
+                        .forEach { extensions.add(it.trimStart('.').lowercase()) }
+                    lower.startsWith("min:") -> minSize = parseSize(term.substring(4))
+                    lower.startsWith("max:") -> maxSize = parseSize(term.substring(4))
+                    '/' in term -> pathGlobs.add(globToRegex(term.trimStart('/')))
+                    else -> nameGlobs.add(globToRegex(term))
+                }
+            }
+            return RpaFilter(expression.trim(), pathGlobs, nameGlobs, extensions, minSize, maxSize)
+        }
+
+        private fun parseSize(text: String): Long {
+            val match = SIZE_PATTERN.matchEntire(text.trim().uppercase())
+                ?: throw IllegalArgumentException("invalid size: $text")
+            val multiplier = when (match.groupValues[2]) {
+                "K" -> 1024L
+                "M" -> 1024L * 1024
+                "G" -> 1024L * 1024 * 1024
+                else -> 1L
+            }
+            return match.groupValues[1].toLong() * multiplier
+        }
+
+        private fun globToRegex(pattern: String): Regex {
+            val regex = StringBuilder()
+            var i = 0
+            while (i < pattern.length) {
+                val c = pattern[i]
+                when {
+                    c == '*' && pattern.startsWith("**", i) -> {
+                        regex.append(".*")
+                        i += 2
+                        continue
+                    }
+                    c == '*' -> regex.append("[^/]*")
+                    c == '?' -> regex.append("[^/]")
+                    else -> regex.append(Regex.escape(c.toString()))
+                }
+                i++
+            }
+            return Regex(regex.toString(), RegexOption.IGNORE_CASE)
+        }
+    }
+
+    fun matches(entry: RpaEntry): Boolean = matches(entry.name, entry.length)
+
+    fun matches(fileName: String, size: Long): Boolean {
+        if (minSize != null && size < minSize) return false
+        if (maxSize != null && size > maxSize) return false
+        if (pathGlobs.isEmpty() && nameGlobs.isEmpty() && extensions.isEmpty()) return true
+
+        val name = fileName.substringAfterLast('/')
+        if (extensions.isNotEmpty() && '.' in name && name.substringAfterLast('.').lowercase() in extensions) {
+            return true
+        }
+        if (pathGlobs.any { it.matches(fileName) }) return true
+        return nameGlobs.any { it.matches(name) }
+    }
+}
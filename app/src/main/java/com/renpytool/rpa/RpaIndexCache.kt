@@ -0,0 +1,134 @@
+package com.renpytool.rpa
+
+import android.content.Context
+import android.util.Log
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.security.MessageDigest
+
+/**
+ * On-disk cache of RPA archive indexes, keyed by canonical path, size and mtime
+ * Shares its file format with rpa_index_cache.py so the Python fallback reuses the same entries
+ */
+class RpaIndexCache(private val directory: File) {
+
+    companion object {
+        private const val TAG = "RpaIndexCache"
+        private val MAGIC = "RPAIDX".toByteArray(Charsets.US_ASCII)
+        private const val FORMAT_VERSION = 1
+
+        // Oldest cache files are removed once there are more than this many
+        private const val MAX_CACHED_ARCHIVES = 64
+
+        /**
+         * Cache directory used by both the JVM reader and rpa_wrapper
+         */
+        fun directory(context: Context): File = File(context.cacheDir, "rpa_index")
+    }
+
+    /**
+     * Get the cached entries of an archive, or null if there is no valid cache entry
+     */
+    fun lookup(archive: File): Map<String, RpaEntry>? {
+        val canonical = archive.canonicalFile
+        val cacheFile = cacheFileFor(canonical)
+        if (!cacheFile.isFile) return null
+
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(cacheFile))).use { input ->
+                val magic = ByteArray(MAGIC.size)
+                input.readFully(magic)
+                if (!magic.contentEquals(MAGIC) || input.readUnsignedShort() != FORMAT_VERSION) return null
+
+                val path = String(readBlock(input), Charsets.UTF_8)
+                val size = input.readLong()
+                val mtime = input.readLong()
+                if (path != canonical.path || size != canonical.length() || mtime != canonical.lastModified()) {
+                    return null
+                }
+
+                input.readLong() // key
+                input.readLong() // total size
+                val count = input.readInt()
+                val entries = LinkedHashMap<String, RpaEntry>(count * 2)
+                repeat(count) {
+                    val name = String(readBlock(input), Charsets.UTF_8)
+                    val offset = input.readLong()
+                    val length = input.readLong()
+                    entries[name] = RpaEntry(name, offset, length, readBlock(input))
+                }
+                entries
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Ignoring unreadable index cache for ${archive.name}: ${e.message}")
+            null
+        }
+    }
+
+    /**
+     * Cache the entries of an archive, ignoring write errors
+     */
+    fun store(archive: File, key: Long, entries: Map<String, RpaEntry>) {
+        try {
+            val canonical = archive.canonicalFile
+            if (!directory.isDirectory) directory.mkdirs()
+            val cacheFile = cacheFileFor(canonical)
+            val tempFile = File(cacheFile.path + ".tmp")
+
+            DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { out ->
+                out.write(MAGIC)
+                out.writeShort(FORMAT_VERSION)
+                writeBlock(out, canonical.path.toByteArray(Charsets.UTF_8))
+                out.writeLong(canonical.length())
+                out.writeLong(canonical.lastModified())
+                out.writeLong(key)
+                out.writeLong(entries.values.sumOf { it.length })
+                out.writeInt(entries.size)
+                for (entry in entries.values) {
+                    writeBlock(out, entry.name.toByteArray(Charsets.UTF_8))
+                    out.writeLong(entry.offset)
+                    out.writeLong(entry.length)
+                    writeBlock(out, entry.prefix)
+                }
+            }
+            if (!tempFile.renameTo(cacheFile)) {
+                tempFile.delete()
+                return
+            }
+            prune()
+        } catch (e: IOException) {
+            Log.w(TAG, "Failed to cache index of ${archive.name}: ${e.message}")
+        }
+    }
+
+    private fun cacheFileFor(canonical: File): File {
+        val digest = MessageDigest.getInstance("SHA-1").digest(canonical.path.toByteArray(Charsets.UTF_8))
+        return File(directory, digest.joinToString("") { "%02x".format(it) } + ".idx")
+    }
+
+    private fun readBlock(input: DataInputStream): ByteArray {
+        val block = ByteArray(input.readUnsignedShort())
+        input.readFully(block)
+        return block
+    }
+
+    private fun writeBlock(out: DataOutputStream, block: ByteArray) {
+        if (block.size > 0xFFFF) throw IOException("Index field too long to cache")
+        out.writeShort(block.size)
+        out.write(block)
+    }
+
+    private fun prune() {
+        val files = directory.listFiles { file -> file.name.endsWith(".idx") } ?: return
+        if (files.size <= MAX_CACHED_ARCHIVES) return
+        files.sortedBy { it.lastModified() }
+            .take(files.size - MAX_CACHED_ARCHIVES)
+            .forEach { it.delete() }
+    }
+}
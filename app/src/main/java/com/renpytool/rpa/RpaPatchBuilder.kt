@@ -0,0 +1,339 @@
+package com.renpytool.rpa
+
+import android.content.Context
+import android.util.Log
+import com.renpytool.ProgressData
+import com.renpytool.ProgressTracker
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Result of building a patch archive
+ *
+ * @param patchFile The patch written, or null if there was nothing to patch
+ * @param removed Files of the base missing from the modified version, which a patch cannot remove
+ */
+data class RpaPatchResult(
+    val success: Boolean,
+    val message: String,
+    val patchFile: File? = null,
+    val added: Int = 0,
+    val changed: Int = 0,
+    val removed: Int = 0,
+    val bytes: Long = 0
+)
+
+/**
+ * Builds patch archives that hold only the files added or changed relative to a base archive
+ *
+ * Files are compared with the base index by length first, and only files whose length
+ * matches their base entry are hashed. Base hashes are kept in a manifest cache keyed by
+ * the base archive's path, size and mtime, so later patches against the same base only
+ * read the modified side. The patch is named `<base>_patch.rpa`, which sorts after the
+ * base, so Ren'Py gives it precedence (see [RpaBatchExtractor.precedenceOrder]).
+ */
+class RpaPatchBuilder(
+    private val tracker: ProgressTracker?,
+    private val manifestDirectory: File,
+    private val threads: Int = 0
+) {
+
+    companion object {
+        private const val TAG = "RpaPatchBuilder"
+        private const val BUFFER_SIZE = 1024 * 1024
+        private const val MAX_AUTO_WORKERS = 8
+        private const val PROGRESS_INTERVAL_MS = 500L
+
+        // Oldest cached base manifests are removed once there are more than this many
+        private const val MAX_CACHED_MANIFESTS = 16
+
+        // Never part of a game: archives, verification manifests and unfinished archive writes
+        private val SKIPPED_EXTENSIONS = setOf("rpa", "sha1", "tmp")
+
+        /**
+         * Manifest cache directory for base archives
+         */
+        fun directory(context: Context): File = File(context.cacheDir, "rpa_manifest")
+
+        /**
+         * Patch archive for a base archive, named to load after it
+         */
+        fun patchFile(base: File): File = File(base.parentFile, "${base.nameWithoutExtension}_patch.rpa")
+    }
+
+    /**
+     * A file of the modified version
+     */
+    private class Candidate(
+        val name: String,
+        val length: Long,
+        val hash: (ByteBuffer, MessageDigest, AtomicLong) -> String,
+        val write: (RpaWriter) -> Unit
+    )
+
+    /**
+     * Write a patch that turns base into the modified directory or archive
+     * An existing patch at the output path is replaced, so patches are cumulative against the base.
+     *
+     * @param modifiedArchive The modified archive if already opened, which the caller closes
+     * @param alignment Page size entry data is aligned to, 0 = packed
+     * @param dedup Store entries with identical contents once
+     */
+    suspend fun build(
+        base: RpaArchive,
+        modified: File,
+        modifiedArchive: RpaArchive? = null,
+        output: File = patchFile(base.file),
+        alignment: Int = 0,
+        dedup: Boolean = false
+    ): RpaPatchResult = withContext(Dispatchers.IO) {
+        val startTime = System.currentTimeMillis()
+        val processedBytes = AtomicLong(0)
+        val processedFiles = AtomicInteger(0)
+        val currentFile = AtomicReference("Comparing indexes...")
+        var totalFiles = 0
+        var totalBytes = 0L
+
+        fun progress(status: String, file: String, errorMessage: String = "") {
+            val data = ProgressData().apply {
+                this.operation = "patch"
+                this.status = status
+                this.totalFiles = totalFiles
+                this.processedFiles = processedFiles.get()
+                this.currentFile = file
+                this.startTime = startTime
+                this.lastUpdateTime = System.currentTimeMillis()
+                this.errorMessage = errorMessage
+                this.totalBytes = totalBytes
+                this.processedBytes = processedBytes.get()
+            }
+            try {
+                tracker?.writeProgress(data)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to update progress", e)
+            }
+        }
+
+        val monitor = launch {
+            while (isActive) {
+                progress("in_progress", currentFile.get())
+                delay(PROGRESS_INTERVAL_MS)
+            }
+        }
+
+        var openedArchive: RpaArchive? = null
+        try {
+            val candidates = if (modified.isDirectory) {
+                listDirectory(modified, setOf(base.file.canonicalFile, output.canonicalFile))
+            } else {
+                listArchive(modifiedArchive ?: RpaArchive.open(modified).also { openedArchive = it })
+            }
+
+            // Classify by the indexes alone
+            val names = candidates.mapTo(HashSet()) { it.name }
+            val added = candidates.filter { it.name !in base.entries }
+            val resized = candidates.filter { candidate ->
+                base.entries[candidate.name]?.let { it.length != candidate.length } ?: false
+            }
+            val sameLength = candidates.filter { base.entries[it.name]?.length == it.length }
+            val removed = base.entries.keys.count { it !in names }
+
+            // Hash same-length files on both sides, reusing cached base hashes
+            val manifest = manifestFileFor(base.file)
+            val baseHashes = ConcurrentHashMap(readCachedManifest(manifest))
+            val unhashed = sameLength.mapNotNull { base.entries[it.name] }.filter { !baseHashes.containsKey(it.name) }
+            totalFiles = unhashed.size + sameLength.size
+            totalBytes = unhashed.sumOf { it.dataLength } + sameLength.sumOf { it.length }
+
+            hashAll(unhashed, { it.name }, currentFile, processedFiles) { entry, buffer, digest ->
+                baseHashes[entry.name] = RpaVerifier.hashEntry(base, entry, buffer, digest, processedBytes)
+            }
+            if (unhashed.isNotEmpty()) saveCachedManifest(manifest, baseHashes)
+
+            val modifiedHashes = ConcurrentHashMap<String, String>(sameLength.size * 2)
+            hashAll(sameLength, { it.name }, currentFile, processedFiles) { candidate, buffer, digest ->
+                modifiedHashes[candidate.name] = candidate.hash(buffer, digest, processedBytes)
+            }
+            val changed = sameLength.filter { modifiedHashes[it.name] != baseHashes[it.name] }
+
+            val patchEntries = (added + resized + changed).sortedBy { it.name }
+            if (patchEntries.isEmpty()) {
+                // A leftover patch would still override the base with outdated files
+                val removedStale = output.isFile && output.delete()
+                monitor.cancelAndJoin()
+                progress("completed", "Complete")
+                return@withContext RpaPatchResult(
+                    success = true,
+                    message = "No changes against ${base.file.name}" + if (removedStale) ", removed old ${output.name}" else "",
+                    removed = removed
+                )
+            }
+
+            // Write only the differing files
+            processedFiles.set(0)
+            processedBytes.set(0)
+            totalFiles = patchEntries.size
+            totalBytes = patchEntries.sumOf { it.length }
+            RpaWriter(output, alignment, dedup).use { writer ->
+                for (candidate in patchEntries) {
+                    ensureActive()
+                    currentFile.set(candidate.name)
+                    candidate.write(writer)
+                    processedFiles.incrementAndGet()
+                    processedBytes.addAndGet(candidate.length)
+                }
+                currentFile.set("Writing archive index...")
+                writer.finish()
+            }
+
+            monitor.cancelAndJoin()
+            val elapsedMs = System.currentTimeMillis() - startTime
+            var message = String.format(
+                java.util.Locale.US,
+                "Created %s: %d added, %d changed, %.1f MB in %.1f s",
+                output.name, added.size, resized.size + changed.size,
+                totalBytes / (1024.0 * 1024.0), elapsedMs / 1000.0
+            )
+            if (removed > 0) message += " ($removed removed files stay in the base)"
+            progress("completed", "Complete")
+
+            RpaPatchResult(
+                success = true,
+                message = message,
+                patchFile = output,
+                added = added.size,
+                changed = resized.size + changed.size,
+                removed = removed,
+                bytes = totalBytes
+            )
+        } catch (e: Exception) {
+            Log.e(TAG, "Patch creation failed", e)
+            monitor.cancelAndJoin()
+            progress("failed", "", "Error: ${e.message}")
+            RpaPatchResult(false, "Error: ${e.message}")
+        } finally {
+            openedArchive?.close()
+        }
+    }
+
+    /**
+     * Hash items on parallel workers, each taking the next item in order
+     */
+    private suspend fun <T> hashAll(
+        items: List<T>,
+        name: (T) -> String,
+        currentFile: AtomicReference<String>,
+        processedFiles: AtomicInteger,
+        hash: (T, ByteBuffer, MessageDigest) -> Unit
+    ) = coroutineScope {
+        val workerCount = if (threads > 0) threads else minOf(Runtime.getRuntime().availableProcessors(), MAX_AUTO_WORKERS)
+        val next = AtomicInteger(0)
+        (0 until minOf(workerCount, items.size)).map {
+            launch {
+                val buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+                val digest = MessageDigest.getInstance("SHA-1")
+                while (true) {
+                    val index = next.getAndIncrement()
+                    if (index >= items.size) break
+                    ensureActive()
+                    currentFile.set(name(items[index]))
+                    hash(items[index], buffer, digest)
+                    processedFiles.incrementAndGet()
+                }
+            }
+        }.joinAll()
+    }
+
+    private fun listDirectory(directory: File, skip: Set<File>): List<Candidate> {
+        return directory.walkTopDown()
+            .filter { it.isFile && it.extension.lowercase() !in SKIPPED_EXTENSIONS && it.canonicalFile !in skip }
+            .map { file ->
+                val name = file.relativeTo(directory).path.replace(File.separatorChar, '/')
+                Candidate(
+                    name = name,
+                    length = file.length(),
+                    hash = { buffer, digest, processedBytes -> hashFile(file, buffer, digest, processedBytes) },
+                    write = { writer -> writer.add(name, file) }
+                )
+            }
+            .toList()
+    }
+
+    private fun listArchive(archive: RpaArchive): List<Candidate> {
+        return archive.entriesByOffset().map { entry ->
+            Candidate(
+                name = entry.name,
+                length = entry.length,
+                hash = { buffer, digest, processedBytes -> RpaVerifier.hashEntry(archive, entry, buffer, digest, processedBytes) },
+                write = { writer -> writer.add(entry.name) { archive.copyEntry(entry, it) } }
+            )
+        }
+    }
+
+    private fun hashFile(file: File, buffer: ByteBuffer, digest: MessageDigest, processedBytes: AtomicLong): String {
+        digest.reset()
+        FileInputStream(file).channel.use { channel ->
+            while (true) {
+                buffer.clear()
+                val read = channel.read(buffer)
+                if (read < 0) break
+                buffer.flip()
+                digest.update(buffer)
+                processedBytes.addAndGet(read.toLong())
+            }
+        }
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+
+    /**
+     * Cache file for a base archive; a changed archive maps to a new file
+     */
+    private fun manifestFileFor(base: File): File {
+        val canonical = base.canonicalFile
+        val id = "${canonical.path}:${canonical.length()}:${canonical.lastModified()}"
+        val digest = MessageDigest.getInstance("SHA-1").digest(id.toByteArray(Charsets.UTF_8))
+        return File(manifestDirectory, digest.joinToString("") { "%02x".format(it) } + ".sha1")
+    }
+
+    private fun readCachedManifest(file: File): Map<String, String> {
+        if (!file.isFile) return emptyMap()
+        return try {
+            RpaVerifier.readManifest(file)
+        } catch (e: IOException) {
+            Log.w(TAG, "Ignoring unreadable manifest cache: ${e.message}")
+            emptyMap()
+        }
+    }
+
+    private fun saveCachedManifest(file: File, hashes: Map<String, String>) {
+        try {
+            if (!manifestDirectory.isDirectory) manifestDirectory.mkdirs()
+            RpaVerifier.writeManifest(file, hashes)
+
+            val files = manifestDirectory.listFiles { f -> f.name.endsWith(".sha1") } ?: return
+            if (files.size > MAX_CACHED_MANIFESTS) {
+                files.sortedBy { it.lastModified() }
+                    .take(files.size - MAX_CACHED_MANIFESTS)
+                    .forEach { it.delete() }
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Failed to cache base manifest: ${e.message}")
+        }
+    }
+}
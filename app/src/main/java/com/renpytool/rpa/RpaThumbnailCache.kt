@@ -0,0 +1,145 @@
+package com.renpytool.rpa
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.util.Log
+import android.util.LruCache
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.security.MessageDigest
+
+/**
+ * Thumbnails and previews of images stored in an RPA archive
+ * Images are decoded from their entry alone, downsampled with inSampleSize, and kept in a
+ * process-wide LRU memory cache backed by PNG files in the cache directory.
+ */
+class RpaThumbnailCache(private val archive: RpaArchive, private val directory: File) {
+
+    companion object {
+        private const val TAG = "RpaThumbnailCache"
+
+        // Longest side of list thumbnails, in pixels
+        const val THUMBNAIL_SIZE = 96
+
+        // Longest side of full-screen previews, in pixels
+        const val PREVIEW_SIZE = 1280
+
+        // Entries larger than this are not decoded at all
+        private const val MAX_SOURCE_BYTES = 32L * 1024 * 1024
+
+        // Oldest disk cache files are removed once they take up more than this
+        private const val MAX_DISK_BYTES = 64L * 1024 * 1024
+
+        private val IMAGE_EXTENSIONS = setOf("png", "jpg", "jpeg", "webp", "bmp", "gif")
+
+        // Shared by all archives so browsing several archives stays within one budget
+        private val memoryCache = object : LruCache<String, Bitmap>(
+            (Runtime.getRuntime().maxMemory() / 8).coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+        ) {
+            override fun sizeOf(key: String, value: Bitmap): Int = value.byteCount
+        }
+
+        /**
+         * Disk cache directory for thumbnails
+         */
+        fun directory(context: Context): File = File(context.cacheDir, "rpa_thumbnails")
+
+        fun isImage(name: String): Boolean =
+            name.substringAfterLast('.', "").lowercase() in IMAGE_EXTENSIONS
+
+        /**
+         * Largest power of two that keeps the longest side of the image at or above targetSize
+         */
+        fun sampleSize(width: Int, height: Int, targetSize: Int): Int {
+            var sampleSize = 1
+            val longest = maxOf(width, height)
+            while (longest / (sampleSize * 2) >= targetSize) {
+                sampleSize *= 2
+            }
+            return sampleSize
+        }
+    }
+
+    // Identifies this version of the archive, so a rewritten archive never serves stale images
+    private val archiveId: String = archive.file.canonicalFile.let { "${it.path}:${it.length()}:${it.lastModified()}" }
+
+    /**
+     * Get an already decoded image without touching the disk or the archive
+     */
+    fun peek(entry: RpaEntry, size: Int): Bitmap? = memoryCache.get(cacheKey(entry, size))
+
+    /**
+     * Get an image of the entry no larger than needed for size, or null if it cannot be decoded
+     * Reads at most the entry's own bytes, and none at all when the image is cached.
+     */
+    fun load(entry: RpaEntry, size: Int): Bitmap? {
+        if (!isImage(entry.name) || entry.length > MAX_SOURCE_BYTES) return null
+
+        val key = cacheKey(entry, size)
+        memoryCache.get(key)?.let { return it }
+
+        val cacheFile = File(directory, "$key.png")
+        if (cacheFile.isFile) {
+            BitmapFactory.decodeFile(cacheFile.path)?.let { bitmap ->
+                cacheFile.setLastModified(System.currentTimeMillis())
+                memoryCache.put(key, bitmap)
+                return bitmap
+            }
+        }
+
+        val bitmap = try {
+            decode(archive.readBytes(entry), size)
+        } catch (e: IOException) {
+            Log.w(TAG, "Could not read ${entry.name}: ${e.message}")
+            null
+        } ?: return null
+
+        memoryCache.put(key, bitmap)
+        store(cacheFile, bitmap)
+        return bitmap
+    }
+
+    /**
+     * Remove the oldest disk cache files until the cache fits its size limit
+     */
+    fun trim() {
+        val files = directory.listFiles { file -> file.name.endsWith(".png") } ?: return
+        var total = files.sumOf { it.length() }
+        if (total <= MAX_DISK_BYTES) return
+        for (file in files.sortedBy { it.lastModified() }) {
+            if (total <= MAX_DISK_BYTES) break
+            total -= file.length()
+            file.delete()
+        }
+    }
+
+    private fun decode(data: ByteArray, size: Int): Bitmap? {
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        BitmapFactory.decodeByteArray(data, 0, data.size, bounds)
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null
+
+        val options = BitmapFactory.Options().apply {
+            inSampleSize = sampleSize(bounds.outWidth, bounds.outHeight, size)
+        }
+        return BitmapFactory.decodeByteArray(data, 0, data.size, options)
+    }
+
+    private fun store(cacheFile: File, bitmap: Bitmap) {
+        try {
+            if (!directory.isDirectory) directory.mkdirs()
+            val tempFile = File(cacheFile.path + ".tmp")
+            FileOutputStream(tempFile).use { bitmap.compress(Bitmap.CompressFormat.PNG, 100, it) }
+            if (!tempFile.renameTo(cacheFile)) tempFile.delete()
+        } catch (e: IOException) {
+            Log.w(TAG, "Failed to cache thumbnail: ${e.message}")
+        }
+    }
+
+    private fun cacheKey(entry: RpaEntry, size: Int): String {
+        val id = "$archiveId:${entry.name}:${entry.offset}:${entry.length}:$size"
+        val digest = MessageDigest.getInstance("SHA-1").digest(id.toByteArray(Charsets.UTF_8))
+        return digest.joinToString("") { "%02x".format(it) }
+    }
+}
@@ -0,0 +1,298 @@
+package com.renpytool.rpa
+
+import android.util.Log
+import com.renpytool.ProgressData
+import com.renpytool.ProgressTracker
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Result of verifying an archive, mirroring the dict returned by rpa_wrapper.verify_rpa
+ *
+ * @param success Whether the archive was read completely and no problems were found
+ * @param problems Corrupt, out of bounds, overlapping or changed entries
+ * @param hashes SHA-1 of every readable entry's extracted contents, by name
+ */
+data class RpaVerifyResult(
+    val success: Boolean,
+    val message: String,
+    val problems: List<String>,
+    val hashes: Map<String, String> = emptyMap(),
+    val bytes: Long = 0,
+    val megabytesPerSecond: Double = 0.0
+)
+
+/**
+ * Checks RPA archives for truncation and corruption without writing any output
+ *
+ * Every index entry is bounds-checked against the file and the index, overlapping
+ * entries are reported (identical regions shared by deduplicated files are fine),
+ * and every entry is read by parallel workers using positional reads to build a
+ * SHA-1 manifest. The manifest can be saved next to the archive as `<archive>.sha1`
+ * (sha1sum format, so it also checks an extracted copy); when one exists, entries
+ * are compared against it, which catches corruption that leaves the layout intact.
+ */
+class RpaVerifier(
+    private val tracker: ProgressTracker?,
+    private val threads: Int = 0
+) {
+
+    companion object {
+        private const val TAG = "RpaVerifier"
+        private const val BUFFER_SIZE = 1024 * 1024
+        private const val MAX_AUTO_WORKERS = 8
+        private const val PROGRESS_INTERVAL_MS = 500L
+
+        /**
+         * Manifest file kept next to an archive
+         */
+        fun manifestFile(archive: File): File = File(archive.path + ".sha1")
+
+        /**
+         * Read a sha1sum-style manifest into a map of name to hex digest
+         */
+        fun readManifest(file: File): Map<String, String> {
+            val hashes = LinkedHashMap<String, String>()
+            file.forEachLine(Charsets.UTF_8) { line ->
+                val separator = line.indexOf("  ")
+                if (separator == 40) {
+                    hashes[line.substring(separator + 2)] = line.substring(0, separator).lowercase()
+                }
+            }
+            return hashes
+        }
+
+        /**
+         * Write a sha1sum-style manifest, replacing any existing one
+         */
+        fun writeManifest(file: File, hashes: Map<String, String>) {
+            val temp = File(file.path + ".tmp")
+            temp.bufferedWriter(Charsets.UTF_8).use { out ->
+                for (name in hashes.keys.sorted()) {
+                    out.write("${hashes[name]}  $name\n")
+                }
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete()
+                throw IOException("Failed to write ${file.name}")
+            }
+        }
+
+        /**
+         * SHA-1 of an entry's extracted contents (prefix followed by its data)
+         */
+        internal fun hashEntry(
+            archive: RpaArchive,
+            entry: RpaEntry,
+            buffer: ByteBuffer,
+            digest: MessageDigest,
+            processedBytes: AtomicLong
+        ): String {
+            digest.reset()
+            digest.update(entry.prefix)
+
+            val channel = archive.channel
+            var position = entry.offset
+            var remaining = entry.dataLength
+            while (remaining > 0) {
+                buffer.clear()
+                if (remaining < buffer.capacity()) buffer.limit(remaining.toInt())
+                val read = channel.read(buffer, position)
+                if (read <= 0) throw IOException("unexpected end of archive, $remaining bytes missing")
+                buffer.flip()
+                digest.update(buffer)
+                position += read
+                remaining -= read
+                processedBytes.addAndGet(read.toLong())
+            }
+            return digest.digest().joinToString("") { "%02x".format(it) }
+        }
+    }
+
+    /**
+     * Verify an opened archive
+     * Only the last archive of a batch (batchIndex == batchTotal) reports a final status.
+     *
+     * @param saveManifest Write the entry hashes to the manifest file if no problems were found
+     */
+    suspend fun verify(
+        archive: RpaArchive,
+        saveManifest: Boolean = false,
+        batchIndex: Int = 0,
+        batchTotal: Int = 0
+    ): RpaVerifyResult = withContext(Dispatchers.IO) {
+        val startTime = System.currentTimeMillis()
+        val problems = Collections.synchronizedList(ArrayList<String>())
+        val manifest = manifestFile(archive.file)
+        val expected = if (manifest.isFile) {
+            try {
+                readManifest(manifest)
+            } catch (e: IOException) {
+                problems.add("${manifest.name}: unreadable (${e.message})")
+                null
+            }
+        } else {
+            null
+        }
+
+        // Structural checks on the index alone
+        val entries = archive.entriesByOffset()
+        val readable = ArrayList<RpaEntry>(entries.size)
+        var previous: RpaEntry? = null
+        for (entry in entries) {
+            val end = entry.offset + entry.dataLength
+            when {
+                entry.offset < 0 || entry.dataLength < 0 || end > archive.fileSize -> {
+                    problems.add("${entry.name}: points outside the archive (truncated?)")
+                    continue
+                }
+                end > archive.indexOffset ->
+                    problems.add("${entry.name}: overlaps the archive index")
+            }
+            previous?.let { last ->
+                val sharesRegion = last.offset == entry.offset && last.dataLength == entry.dataLength
+                if (!sharesRegion && entry.offset < last.offset + last.dataLength) {
+                    problems.add("${entry.name}: overlaps ${last.name}")
+                }
+            }
+            if (previous == null || entry.offset + entry.dataLength > previous.offset + previous.dataLength) {
+                previous = entry
+            }
+            readable.add(entry)
+        }
+
+        val totalBytes = readable.sumOf { it.dataLength }
+        val processedBytes = AtomicLong(0)
+        val processedFiles = AtomicInteger(0)
+        val currentFile = AtomicReference("")
+        val hashes = ConcurrentHashMap<String, String>(readable.size * 2)
+
+        fun progress(status: String, file: String, errorMessage: String = "") {
+            val data = ProgressData().apply {
+                this.operation = "verify"
+                this.status = status
+                this.totalFiles = readable.size
+                this.processedFiles = processedFiles.get()
+                this.currentFile = file
+                this.startTime = startTime
+                this.lastUpdateTime = System.currentTimeMillis()
+                this.errorMessage = errorMessage
+                this.totalBytes = totalBytes
+                this.processedBytes = processedBytes.get()
+                this.currentBatchIndex = batchIndex
+                this.totalBatchCount = batchTotal
+                this.currentBatchFileName = archive.file.name
+            }
+            try {
+                tracker?.writeProgress(data)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to update progress", e)
+            }
+        }
+
+        progress("in_progress", "Checking index...")
+
+        // Hash every entry; workers take the next entry in offset order
+        val workerCount = if (threads > 0) threads else minOf(Runtime.getRuntime().availableProcessors(), MAX_AUTO_WORKERS)
+        val nextEntry = AtomicInteger(0)
+        val workers = (0 until workerCount).map {
+            launch {
+                val buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+                val digest = MessageDigest.getInstance("SHA-1")
+                while (true) {
+                    val index = nextEntry.getAndIncrement()
+                    if (index >= readable.size) break
+                    ensureActive()
+
+                    val entry = readable[index]
+                    currentFile.set(entry.name)
+                    try {
+                        hashes[entry.name] = hashEntry(archive, entry, buffer, digest, processedBytes)
+                    } catch (e: IOException) {
+                        problems.add("${entry.name}: ${e.message}")
+                    }
+                    processedFiles.incrementAndGet()
+                }
+            }
+        }
+        val monitor = launch {
+            while (isActive) {
+                delay(PROGRESS_INTERVAL_MS)
+                progress("in_progress", currentFile.get())
+            }
+        }
+        workers.joinAll()
+        monitor.cancelAndJoin()
+
+        // Compare against the saved manifest
+        var added = 0
+        if (expected != null) {
+            for ((name, hash) in expected) {
+                val actual = hashes[name]
+                when {
+                    actual != null && actual != hash -> problems.add("$name: contents differ from ${manifest.name}")
+                    actual == null && name !in archive.entries -> problems.add("$name: missing (listed in ${manifest.name})")
+                }
+            }
+            added = hashes.keys.count { it !in expected }
+        }
+
+        val elapsedMs = System.currentTimeMillis() - startTime
+        val megabytesPerSecond = if (elapsedMs > 0) processedBytes.get() / (1024.0 * 1024.0) * 1000.0 / elapsedMs else 0.0
+        val sortedProblems = problems.sorted()
+
+        var message = if (sortedProblems.isEmpty()) {
+            String.format(java.util.Locale.US, "Verified %d files, no problems found (%.1f MB/s)", hashes.size, megabytesPerSecond)
+        } else {
+            "${archive.file.name}: ${sortedProblems.size} problems found"
+        }
+        if (expected != null) {
+            message += if (added > 0) ", checked against ${manifest.name} ($added new files)" else ", checked against ${manifest.name}"
+        }
+        if (saveManifest) {
+            if (sortedProblems.isEmpty()) {
+                try {
+                    writeManifest(manifest, hashes)
+                    message += ", saved ${manifest.name}"
+                } catch (e: IOException) {
+                    Log.w(TAG, "Could not save manifest: ${e.message}")
+                    message += ", could not save ${manifest.name}"
+                }
+            } else {
+                message += ", manifest not saved"
+            }
+        }
+
+        if (batchIndex == batchTotal) {
+            if (sortedProblems.isEmpty()) {
+                progress("completed", "Complete")
+            } else {
+                progress("failed", "", (listOf(message) + sortedProblems.take(20)).joinToString("\n"))
+            }
+        }
+
+        RpaVerifyResult(
+            success = sortedProblems.isEmpty(),
+            message = message,
+            problems = sortedProblems,
+            hashes = hashes,
+            bytes = processedBytes.get(),
+            megabytesPerSecond = megabytesPerSecond
+        )
+    }
+}
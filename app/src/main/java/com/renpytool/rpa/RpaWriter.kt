@@ -0,0 +1,177 @@
+package com.renpytool.rpa
+
+import java.io.Closeable
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.WritableByteChannel
+import java.security.MessageDigest
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+
+/**
+ * Streaming RPA-3.0 archive writer, producing the same layout as rpatool
+ *
+ * Entries are written straight into a temporary file next to the output, which replaces
+ * the output only when [finish] succeeds. Closing an unfinished writer discards it.
+ * A verification manifest of a replaced archive (see [RpaVerifier.manifestFile]) is removed.
+ * Not thread-safe; callers adding entries from several threads must serialize them.
+ *
+ * @param alignment Page size entry data is aligned to, 0 = packed
+ * @param dedup Store entries with identical contents once
+ */
+class RpaWriter(
+    private val output: File,
+    private val alignment: Int = 0,
+    private val dedup: Boolean = false,
+    private val key: Long = DEFAULT_KEY
+) : Closeable {
+
+    companion object {
+        const val DEFAULT_KEY = 0xDEADBEEFL
+
+        // "RPA-3.0 " + 16 hex digits index offset + ' ' + 8 hex digits key + '\n'
+        private const val HEADER_LENGTH = 34L
+    }
+
+    private val tempFile = File(output.path + ".tmp")
+    private val raf = RandomAccessFile(tempFile, "rw").apply { setLength(0) }
+    private val channel = raf.channel
+
+    // name -> (data offset, length)
+    private val index = LinkedHashMap<String, Pair<Long, Long>>()
+
+    // (length, SHA-1) of data already written -> its offset
+    private val regions = HashMap<String, Long>()
+
+    private var offset = HEADER_LENGTH
+    private var finished = false
+
+    /**
+     * Bytes not written because their contents duplicated an earlier entry
+     */
+    var savedBytes = 0L
+        private set
+
+    val entryCount: Int
+        get() = index.size
+
+    init {
+        channel.position(offset)
+    }
+
+    fun add(name: String, data: ByteArray) = add(name) { target ->
+        val buffer = ByteBuffer.wrap(data)
+        while (buffer.hasRemaining()) target.write(buffer)
+    }
+
+    fun add(name: String, file: File) = add(name) { target ->
+        FileInputStream(file).channel.use { source ->
+            var position = 0L
+            val size = source.size()
+            while (position < size) {
+                position += source.transferTo(position, size - position, target)
+            }
+        }
+    }
+
+    /**
+     * Add an entry whose data is written by writeData, returning its length
+     * Adding a name twice replaces the earlier entry in the index.
+     */
+    fun add(name: String, writeData: (WritableByteChannel) -> Unit): Long {
+        check(!finished) { "Archive already finished" }
+
+        val start = offset
+        if (alignment > 1) {
+            val padding = (-offset).mod(alignment.toLong())
+            if (padding > 0) {
+                val zeros = ByteBuffer.allocate(padding.toInt())
+                while (zeros.hasRemaining()) channel.write(zeros)
+                offset += padding
+            }
+        }
+
+        val dataOffset = offset
+        val digest = if (dedup) MessageDigest.getInstance("SHA-1") else null
+        writeData(if (digest != null) HashingChannel(channel, digest) else channel)
+        val length = channel.position() - dataOffset
+
+        if (digest != null) {
+            val region = "$length:" + digest.digest().joinToString("") { "%02x".format(it) }
+            val existing = regions[region]
+            if (existing != null) {
+                // Same contents were written before: drop this copy and share that region
+                channel.truncate(start)
+                channel.position(start)
+                offset = start
+                savedBytes += length
+                index[name] = existing to length
+                return length
+            }
+            regions[region] = dataOffset
+        }
+
+        offset += length
+        index[name] = dataOffset to length
+        return length
+    }
+
+    /**
+     * Write the index and header and move the archive into place
+     */
+    fun finish(): File {
+        check(!finished) { "Archive already finished" }
+
+        val pickled = PickleEncoder.encode(
+            index.mapValues { (_, entry) -> listOf((entry.first xor key) to (entry.second xor key)) }
+        )
+        val indexOut = DeflaterOutputStream(Channels.newOutputStream(channel), Deflater(), 64 * 1024)
+        indexOut.write(pickled)
+        indexOut.finish()
+
+        val header = "RPA-3.0 %016x %08x\n".format(offset, key).toByteArray(Charsets.US_ASCII)
+        channel.write(ByteBuffer.wrap(header), 0)
+        channel.force(false)
+        raf.close()
+        finished = true
+
+        if (!tempFile.renameTo(output)) {
+            tempFile.delete()
+            throw IOException("Could not move archive into place: ${output.path}")
+        }
+        // Its hashes described the archive this one replaced
+        RpaVerifier.manifestFile(output).delete()
+        return output
+    }
+
+    override fun close() {
+        if (finished) return
+        raf.close()
+        tempFile.delete()
+        finished = true
+    }
+
+    /**
+     * Channel that hashes everything written through it
+     */
+    private class HashingChannel(
+        private val target: WritableByteChannel,
+        private val digest: MessageDigest
+    ) : WritableByteChannel {
+        override fun write(src: ByteBuffer): Int {
+            val hashed = src.duplicate()
+            val written = target.write(src)
+            hashed.limit(hashed.position() + written)
+            digest.update(hashed)
+            return written
+        }
+
+        override fun isOpen(): Boolean = target.isOpen
+
+        override fun close() = target.close()
+    }
+}
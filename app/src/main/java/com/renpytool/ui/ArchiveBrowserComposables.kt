@@ -0,0 +1,304 @@
+package com.renpytool.ui
+
+import android.graphics.Bitmap
+import androidx.compose.foundation.Image
+import androidx.compose.foundation.clickable
+import androidx.compose.foundation.horizontalScroll
+import androidx.compose.foundation.layout.*
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.rememberScrollState
+import androidx.compose.foundation.shape.RoundedCornerShape
+import androidx.compose.foundation.verticalScroll
+import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.automirrored.filled.ArrowBack
+import androidx.compose.material.icons.filled.FolderOpen
+import androidx.compose.material3.*
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.produceState
+import androidx.compose.ui.Alignment
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.draw.clip
+import androidx.compose.ui.graphics.asImageBitmap
+import androidx.compose.ui.layout.ContentScale
+import androidx.compose.ui.res.painterResource
+import androidx.compose.ui.text.font.FontFamily
+import androidx.compose.ui.text.style.TextOverflow
+import androidx.compose.ui.unit.dp
+import androidx.compose.ui.unit.sp
+import com.renpytool.R
+import com.renpytool.rpa.RpaThumbnailCache
+import com.renpytool.viewmodel.ArchiveBrowserUiState
+import com.renpytool.viewmodel.ArchiveNode
+import com.renpytool.viewmodel.ArchivePreview
+import java.io.File
+
+/**
+ * Row for a directory or file inside an archive
+ * Image thumbnails are loaded while the row is visible and cancelled when it scrolls away
+ */
+@Composable
+fun ArchiveNodeRow(
+    node: ArchiveNode,
+    cachedThumbnail: (ArchiveNode) -> Bitmap?,
+    loadThumbnail: suspend (ArchiveNode) -> Bitmap?,
+    onClick: () -> Unit,
+    modifier: Modifier = Modifier
+) {
+    val thumbnail by produceState(initialValue = cachedThumbnail(node), node.path) {
+        if (value == null && !node.isDirectory && RpaThumbnailCache.isImage(node.name)) {
+            value = loadThumbnail(node)
+        }
+    }
+
+    Row(
+        modifier = modifier
+            .fillMaxWidth()
+            .clickable(onClick = onClick)
+            .padding(horizontal = 16.dp, vertical = 12.dp),
+        verticalAlignment = Alignment.CenterVertically
+    ) {
+        val image = thumbnail
+        if (image != null) {
+            Image(
+                bitmap = image.asImageBitmap(),
+                contentDescription = null,
+                contentScale = ContentScale.Crop,
+                modifier = Modifier
+                    .size(40.dp)
+                    .clip(RoundedCornerShape(4.dp))
+            )
+        } else {
+            Icon(
+                painter = painterResource(id = getArchiveNodeIcon(node)),
+                contentDescription = null,
+                modifier = Modifier.size(40.dp),
+                tint = MaterialTheme.colorScheme.primary
+            )
+        }
+
+        Spacer(modifier = Modifier.width(16.dp))
+
+        Column(modifier = Modifier.weight(1f)) {
+            Text(
+                text = node.name,
+                style = MaterialTheme.typography.bodyLarge,
+                fontSize = 16.sp,
+                color = MaterialTheme.colorScheme.onSurface,
+                maxLines = 1,
+                overflow = TextOverflow.Ellipsis
+            )
+            Spacer(modifier = Modifier.height(4.dp))
+            Text(
+                text = if (node.isDirectory) {
+                    "${node.fileCount} files • ${formatFileSize(node.size)}"
+                } else {
+                    formatFileSize(node.size)
+                },
+                style = MaterialTheme.typography.bodySmall,
+                color = MaterialTheme.colorScheme.onSurfaceVariant,
+                fontSize = 12.sp
+            )
+        }
+    }
+}
+
+/**
+ * Image or text preview of a single archive entry
+ */
+@Composable
+fun ArchivePreviewDialog(
+    preview: ArchivePreview,
+    onDismiss: () -> Unit
+) {
+    AlertDialog(
+        onDismissRequest = onDismiss,
+        title = {
+            Text(
+                text = preview.name,
+                maxLines = 1,
+                overflow = TextOverflow.Ellipsis
+            )
+        },
+        text = {
+            when (preview) {
+                is ArchivePreview.Loading -> Box(
+                    modifier = Modifier
+                        .fillMaxWidth()
+                        .height(160.dp),
+                    contentAlignment = Alignment.Center
+                ) {
+                    CircularProgressIndicator()
+                }
+                is ArchivePreview.Image -> Image(
+                    bitmap = preview.bitmap.asImageBitmap(),
+                    contentDescription = preview.name,
+                    contentScale = ContentScale.Fit,
+                    modifier = Modifier.fillMaxWidth()
+                )
+                is ArchivePreview.Text -> Column(
+                    modifier = Modifier
+                        .heightIn(max = 480.dp)
+                        .verticalScroll(rememberScrollState())
+                        .horizontalScroll(rememberScrollState())
+                ) {
+                    Text(
+                        text = preview.text,
+                        fontFamily = FontFamily.Monospace,
+                        fontSize = 12.sp
+                    )
+                    if (preview.truncated) {
+                        Spacer(modifier = Modifier.height(8.dp))
+                        Text(
+                            text = "Preview truncated",
+                            style = MaterialTheme.typography.bodySmall,
+                            color = MaterialTheme.colorScheme.onSurfaceVariant
+                        )
+                    }
+                }
+                is ArchivePreview.Unavailable -> Text(preview.reason)
+            }
+        },
+        confirmButton = {
+            TextButton(onClick = onDismiss) {
+                Text("Close")
+            }
+        }
+    )
+}
+
+/**
+ * Archive browser screen with path navigation and a lazily composed entry list
+ */
+@OptIn(ExperimentalMaterial3Api::class)
+@Composable
+fun ArchiveBrowserScreen(
+    uiState: ArchiveBrowserUiState,
+    onNodeClick: (ArchiveNode) -> Unit,
+    onPathClick: (String) -> Unit,
+    onNavigationClick: () -> Unit,
+    onDismissPreview: () -> Unit,
+    cachedThumbnail: (ArchiveNode) -> Bitmap?,
+    loadThumbnail: suspend (ArchiveNode) -> Bitmap?,
+    modifier: Modifier = Modifier
+) {
+    Scaffold(
+        topBar = {
+            TopAppBar(
+                title = {
+                    Column {
+                        Text(
+                            text = uiState.archiveName,
+                            maxLines = 1,
+                            overflow = TextOverflow.Ellipsis
+                        )
+                        if (!uiState.isLoading && uiState.errorMessage == null) {
+                            Text(
+                                text = "${uiState.totalFiles} files",
+                                style = MaterialTheme.typography.bodySmall,
+                                color = MaterialTheme.colorScheme.onSurfaceVariant
+                            )
+                        }
+                    }
+                },
+                navigationIcon = {
+                    IconButton(onClick = onNavigationClick) {
+                        Icon(
+                            imageVector = Icons.AutoMirrored.Filled.ArrowBack,
+                            contentDescription = "Back"
+                        )
+                    }
+                },
+                colors = TopAppBarDefaults.topAppBarColors(
+                    containerColor = MaterialTheme.colorScheme.surfaceContainer,
+                    titleContentColor = MaterialTheme.colorScheme.onSurface,
+                    navigationIconContentColor = MaterialTheme.colorScheme.onSurface
+                )
+            )
+        },
+        modifier = modifier.fillMaxSize()
+    ) { paddingValues ->
+        Column(
+            modifier = Modifier
+                .padding(paddingValues)
+                .fillMaxSize()
+        ) {
+            when {
+                uiState.isLoading -> Box(
+                    modifier = Modifier.fillMaxSize(),
+                    contentAlignment = Alignment.Center
+                ) {
+                    CircularProgressIndicator()
+                }
+                uiState.errorMessage != null -> Box(
+                    modifier = Modifier
+                        .fillMaxSize()
+                        .padding(48.dp),
+                    contentAlignment = Alignment.Center
+                ) {
+                    Text(
+                        text = uiState.errorMessage,
+                        style = MaterialTheme.typography.bodyMedium,
+                        color = MaterialTheme.colorScheme.error
+                    )
+                }
+                else -> {
+                    // The archive name stands in for the root directory
+                    BreadcrumbNavigation(
+                        currentPath = File(uiState.archiveName, uiState.currentPath),
+                        onPathClick = { segment ->
+                            onPathClick(segment.path.removePrefix(uiState.archiveName).trimStart('/'))
+                        }
+                    )
+
+                    if (uiState.items.isEmpty()) {
+                        Box(
+                            modifier = Modifier.fillMaxSize(),
+                            contentAlignment = Alignment.Center
+                        ) {
+                            Icon(
+                                imageVector = Icons.Filled.FolderOpen,
+                                contentDescription = null,
+                                modifier = Modifier.size(120.dp),
+                                tint = MaterialTheme.colorScheme.outline.copy(alpha = 0.5f)
+                            )
+                        }
+                    } else {
+                        LazyColumn(modifier = Modifier.fillMaxSize()) {
+                            items(
+                                items = uiState.items,
+                                key = { it.path + if (it.isDirectory) "/" else "" }
+                            ) { node ->
+                                ArchiveNodeRow(
+                                    node = node,
+                                    cachedThumbnail = cachedThumbnail,
+                                    loadThumbnail = loadThumbnail,
+                                    onClick = { onNodeClick(node) }
+                                )
+                                HorizontalDivider()
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    uiState.preview?.let { preview ->
+        ArchivePreviewDialog(preview = preview, onDismiss = onDismissPreview)
+    }
+}
+
+/**
+ * Get the icon resource for an archive entry based on its type
+ */
+private fun getArchiveNodeIcon(node: ArchiveNode): Int {
+    if (node.isDirectory) return R.drawable.ic_folder
+    val fileName = node.name.lowercase()
+    return when {
+        fileName.endsWith(".rpa") -> R.drawable.ic_rpa_file
+        RpaThumbnailCache.isImage(fileName) -> R.drawable.ic_png_file
+        else -> R.drawable.ic_script_file
+    }
+}
@@ -241,12 +241,18 @@ fun MainScreenContent(
     decompileStatus: String,
     editStatus: String,
     compressStatus: String,
+    verifyStatus: String,
+    patchStatus: String,
+    browseStatus: String,
     cardsEnabled: Boolean,
     onExtractClick: () -> Unit,
     onCreateClick: () -> Unit,
     onDecompileClick: () -> Unit,
     onEditClick: () -> Unit,
     onCompressClick: () -> Unit,
+    onVerifyClick: () -> Unit,
+    onPatchClick: () -> Unit,
+    onBrowseClick: () -> Unit,
     onSettingsClick: () -> Unit,
     modifier: Modifier = Modifier
 ) {
@@ -288,10 +294,13 @@ fun MainScreenContent(
                 // Staggered enter animation for each card
                 val cards = listOf(
                     Triple("Extract RPA", extractStatus, com.renpytool.R.drawable.ic_extract to onExtractClick),
+                    Triple("Browse RPA", browseStatus, com.renpytool.R.drawable.ic_folder to onBrowseClick),
                     Triple("Create RPA", createStatus, com.renpytool.R.drawable.ic_create to onCreateClick),
                     Triple("Decompile RPYC", decompileStatus, com.renpytool.R.drawable.ic_decompile to onDecompileClick),
                     Triple("Edit RPY", editStatus, com.renpytool.R.drawable.ic_edit_rpy to onEditClick),
-                    Triple("Compress Game", compressStatus, com.renpytool.R.drawable.ic_compress to onCompressClick)
+                    Triple("Compress Game", compressStatus, com.renpytool.R.drawable.ic_compress to onCompressClick),
+                    Triple("Verify RPA", verifyStatus, com.renpytool.R.drawable.ic_rpa_file to onVerifyClick),
+                    Triple("Patch RPA", patchStatus, com.renpytool.R.drawable.ic_create to onPatchClick)
                 )
 
                 cards.forEachIndexed { index, (title, status, iconWithClick) ->
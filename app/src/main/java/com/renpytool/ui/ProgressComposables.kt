@@ -207,6 +207,7 @@ fun ProgressScreen(
                     totalFiles = uiState.totalFiles,
                     extractPath = uiState.extractPath,
                     rpycCount = uiState.rpycCount,
+                    megabytesPerSecond = uiState.megabytesPerSecond,
                     onDecompileClick = onDecompileClick,
                     onDoneClick = onDoneClick
                 )
@@ -272,9 +273,16 @@ private fun ExtractCompletionDialog(
     totalFiles: Int,
     extractPath: String,
     rpycCount: Int,
+    megabytesPerSecond: Double,
     onDecompileClick: () -> Unit,
     onDoneClick: () -> Unit
 ) {
+    val throughput = if (megabytesPerSecond > 0) {
+        String.format(Locale.US, " (%.1f MB/s)", megabytesPerSecond)
+    } else {
+        ""
+    }
+
     AlertDialog(
         onDismissRequest = { },
         title = {
@@ -284,8 +292,9 @@ private fun ExtractCompletionDialog(
             Text(
                 String.format(
                     Locale.US,
-                    "Extracted %d files successfully!\n\n📁 %s\n\nFound %d .rpyc files ready to decompile.",
+                    "Extracted %d files successfully%s!\n\n📁 %s\n\nFound %d .rpyc files ready to decompile.",
                     totalFiles,
+                    throughput,
                     extractPath,
                     rpycCount
                 )
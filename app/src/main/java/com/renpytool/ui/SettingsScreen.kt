@@ -12,6 +12,7 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.unit.dp
 import com.renpytool.MainViewModel
+import com.renpytool.rpa.RpaBackend
 
 /**
  * Settings screen with theme selection and keystore management
@@ -26,6 +27,20 @@ fun SettingsScreen(
     onExportKeystores: () -> Unit,
     showDecompileDialog: Boolean,
     onShowDecompileDialogChange: (Boolean) -> Unit,
+    incrementalDecompile: Boolean,
+    onIncrementalDecompileChange: (Boolean) -> Unit,
+    useNativeRpaReader: Boolean,
+    onUseNativeRpaReaderChange: (Boolean) -> Unit,
+    extractThreads: Int,
+    onExtractThreadsChange: (Int) -> Unit,
+    batchConcurrency: Int,
+    onBatchConcurrencyChange: (Int) -> Unit,
+    dedupArchives: Boolean,
+    onDedupArchivesChange: (Boolean) -> Unit,
+    archiveAlignment: Int,
+    onArchiveAlignmentChange: (Int) -> Unit,
+    volumeSizeMb: Int,
+    onVolumeSizeMbChange: (Int) -> Unit,
     modifier: Modifier = Modifier
 ) {
     val context = LocalContext.current
@@ -100,6 +115,85 @@ fun SettingsScreen(
 
             HorizontalDivider(modifier = Modifier.padding(vertical = 8.dp))
 
+            // Decompilation Section
+            SettingsSectionHeader("Decompilation")
+
+            SettingsSwitchItem(
+                title = "Update Changed Scripts",
+                subtitle = "Redecompile scripts whose RPYC changed; scripts you edited are kept",
+                checked = incrementalDecompile,
+                onCheckedChange = onIncrementalDecompileChange
+            )
+
+            HorizontalDivider(modifier = Modifier.padding(vertical = 8.dp))
+
+            // Archives Section
+            SettingsSectionHeader("Archives")
+
+            SettingsSwitchItem(
+                title = "Fast Archive Reader",
+                subtitle = "Read RPA archives natively instead of through Python",
+                checked = useNativeRpaReader,
+                onCheckedChange = onUseNativeRpaReaderChange
+            )
+
+            if (useNativeRpaReader) {
+                val maxThreads = Runtime.getRuntime().availableProcessors()
+                SettingsSliderItem(
+                    title = "Extraction Threads: ${if (extractThreads == 0) "Auto" else extractThreads}",
+                    subtitle = "Auto adds threads until storage stops keeping up",
+                    value = extractThreads,
+                    valueRange = 0..maxThreads,
+                    onValueChange = onExtractThreadsChange
+                )
+                SettingsSliderItem(
+                    title = "Parallel Archives: $batchConcurrency",
+                    subtitle = "Archives extracted at once in a batch; SD cards always take one at a time",
+                    value = batchConcurrency,
+                    valueRange = 1..4,
+                    onValueChange = onBatchConcurrencyChange
+                )
+            }
+
+            SettingsSwitchItem(
+                title = "Deduplicate Files",
+                subtitle = "Store identical files once when creating archives",
+                checked = dedupArchives,
+                onCheckedChange = onDedupArchivesChange
+            )
+
+            ThemeOption(
+                title = "Packed Layout",
+                subtitle = "Store files back to back (smallest archives)",
+                selected = archiveAlignment == 0,
+                onClick = { onArchiveAlignmentChange(0) }
+            )
+
+            ThemeOption(
+                title = "4 KB Aligned",
+                subtitle = "Start each file on a 4 KB page boundary",
+                selected = archiveAlignment == 4096,
+                onClick = { onArchiveAlignmentChange(4096) }
+            )
+
+            ThemeOption(
+                title = "16 KB Aligned",
+                subtitle = "Start each file on a 16 KB page boundary, for 16 KB page devices",
+                selected = archiveAlignment == 16384,
+                onClick = { onArchiveAlignmentChange(16384) }
+            )
+
+            // Steps of 512 MB up to 3.5 GB, which stays below the FAT32 file size limit
+            SettingsSliderItem(
+                title = "Split Archives: ${if (volumeSizeMb == 0) "Off" else "%.1f GB volumes".format(volumeSizeMb / 1024.0)}",
+                subtitle = "Write large archives as archive0.rpa, archive1.rpa, ... for SD cards and MTP",
+                value = volumeSizeMb / RpaBackend.VOLUME_SIZE_STEP_MB,
+                valueRange = 0..7,
+                onValueChange = { onVolumeSizeMbChange(it * RpaBackend.VOLUME_SIZE_STEP_MB) }
+            )
+
+            HorizontalDivider(modifier = Modifier.padding(vertical = 8.dp))
+
             // Keystore Management Section
             SettingsSectionHeader("Keystore Management")
 
@@ -240,6 +334,42 @@ fun SettingsTextItem(
     }
 }
 
+@Composable
+fun SettingsSliderItem(
+    title: String,
+    subtitle: String,
+    value: Int,
+    valueRange: IntRange,
+    onValueChange: (Int) -> Unit
+) {
+    Surface(
+        modifier = Modifier.fillMaxWidth()
+    ) {
+        Column(
+            modifier = Modifier
+                .padding(horizontal = 16.dp, vertical = 12.dp)
+                .fillMaxWidth()
+        ) {
+            Text(
+                text = title,
+                style = MaterialTheme.typography.bodyLarge
+            )
+            Text(
+                text = subtitle,
+                style = MaterialTheme.typography.bodySmall,
+                color = MaterialTheme.colorScheme.onSurfaceVariant
+            )
+            Slider(
+                value = value.toFloat(),
+                onValueChange = { onValueChange(it.toInt()) },
+                valueRange = valueRange.first.toFloat()..valueRange.last.toFloat(),
+                steps = maxOf(valueRange.last - valueRange.first - 1, 0),
+                modifier = Modifier.fillMaxWidth()
+            )
+        }
+    }
+}
+
 @Composable
 fun SettingsSwitchItem(
     title: String,
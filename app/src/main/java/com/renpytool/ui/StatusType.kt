@@ -75,6 +75,7 @@ sealed class StatusType {
                 message.contains("created", ignoreCase = true) ||
                 message.contains("decompiled", ignoreCase = true) ||
                 message.contains("compressed", ignoreCase = true) ||
+                message.contains("verified", ignoreCase = true) ||
                 message.contains("saved", ignoreCase = true) -> Success
 
                 message.contains("error", ignoreCase = true) ||
@@ -0,0 +1,247 @@
+package com.renpytool.viewmodel
+
+import android.app.Application
+import android.graphics.Bitmap
+import androidx.lifecycle.AndroidViewModel
+import androidx.lifecycle.viewModelScope
+import com.renpytool.rpa.RpaArchive
+import com.renpytool.rpa.RpaEntry
+import com.renpytool.rpa.RpaIndexCache
+import com.renpytool.rpa.RpaThumbnailCache
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+
+/**
+ * A directory or file inside an archive
+ *
+ * @param path Full path inside the archive, without a trailing slash
+ * @param fileCount Number of files at or below this node
+ * @param size Total extracted size of those files
+ */
+data class ArchiveNode(
+    val name: String,
+    val path: String,
+    val isDirectory: Boolean,
+    val entry: RpaEntry? = null,
+    val fileCount: Int = 1,
+    val size: Long = 0
+)
+
+sealed class ArchivePreview {
+    abstract val name: String
+
+    data class Loading(override val name: String) : ArchivePreview()
+    data class Image(override val name: String, val bitmap: Bitmap) : ArchivePreview()
+    data class Text(override val name: String, val text: String, val truncated: Boolean) : ArchivePreview()
+    data class Unavailable(override val name: String, val reason: String) : ArchivePreview()
+}
+
+data class ArchiveBrowserUiState(
+    val archiveName: String = "",
+    val currentPath: String = "",
+    val items: List<ArchiveNode> = emptyList(),
+    val totalFiles: Int = 0,
+    val isLoading: Boolean = true,
+    val errorMessage: String? = null,
+    val preview: ArchivePreview? = null
+)
+
+/**
+ * Browses an archive through its index, reading entry data only for thumbnails and previews
+ */
+class ArchiveBrowserViewModel(application: Application) : AndroidViewModel(application) {
+
+    companion object {
+        // Script previews show at most this much of the file
+        private const val MAX_TEXT_PREVIEW_BYTES = 64 * 1024
+
+        // Thumbnails decoded at once; rows scrolled away before their turn are never read
+        private const val THUMBNAIL_WORKERS = 4
+
+        private val TEXT_EXTENSIONS = setOf("rpy", "txt", "json", "py", "csv", "xml", "ini", "cfg", "md")
+    }
+
+    private val _uiState = MutableStateFlow(ArchiveBrowserUiState())
+    val uiState: StateFlow<ArchiveBrowserUiState> = _uiState.asStateFlow()
+    private val context = application.applicationContext
+
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private val thumbnailDispatcher = Dispatchers.IO.limitedParallelism(THUMBNAIL_WORKERS)
+
+    private var archive: RpaArchive? = null
+    private var thumbnails: RpaThumbnailCache? = null
+
+    // Entries grouped by parent directory ("" is the root), built once from the index
+    private val filesByDirectory = HashMap<String, MutableList<RpaEntry>>()
+    private val subdirectories = HashMap<String, MutableSet<String>>()
+    private val directoryTotals = HashMap<String, LongArray>()
+
+    // Sorted listing of each directory, built the first time it is shown
+    private val listings = HashMap<String, List<ArchiveNode>>()
+
+    fun open(archivePath: String) {
+        if (archive != null) return
+        val file = File(archivePath)
+        _uiState.update { it.copy(archiveName = file.name, isLoading = true) }
+
+        viewModelScope.launch {
+            try {
+                val opened = withContext(Dispatchers.IO) {
+                    RpaArchive.open(file, RpaIndexCache(RpaIndexCache.directory(context))).also {
+                        buildTree(it.entries.values)
+                        RpaThumbnailCache(it, RpaThumbnailCache.directory(context)).also { cache ->
+                            cache.trim()
+                            thumbnails = cache
+                        }
+                    }
+                }
+                archive = opened
+                _uiState.update { it.copy(totalFiles = opened.entries.size, isLoading = false) }
+                navigateTo("")
+            } catch (e: Exception) {
+                _uiState.update { it.copy(isLoading = false, errorMessage = "Could not open archive: ${e.message}") }
+            }
+        }
+    }
+
+    fun navigateTo(path: String) {
+        val items = listings.getOrPut(path) { listDirectory(path) }
+        _uiState.update { it.copy(currentPath = path, items = items) }
+    }
+
+    fun navigateUp() {
+        val current = _uiState.value.currentPath
+        if (current.isNotEmpty()) navigateTo(current.substringBeforeLast('/', ""))
+    }
+
+    /**
+     * Thumbnail already in memory, for drawing a row without waiting
+     */
+    fun cachedThumbnail(node: ArchiveNode): Bitmap? {
+        val entry = node.entry ?: return null
+        return thumbnails?.peek(entry, RpaThumbnailCache.THUMBNAIL_SIZE)
+    }
+
+    /**
+     * Decode a thumbnail for a row; cancelled with the row when it scrolls out of view
+     */
+    suspend fun loadThumbnail(node: ArchiveNode): Bitmap? {
+        val entry = node.entry ?: return null
+        if (!RpaThumbnailCache.isImage(entry.name)) return null
+        val cache = thumbnails ?: return null
+        return withContext(thumbnailDispatcher) { cache.load(entry, RpaThumbnailCache.THUMBNAIL_SIZE) }
+    }
+
+    fun showPreview(node: ArchiveNode) {
+        val entry = node.entry ?: return
+        _uiState.update { it.copy(preview = ArchivePreview.Loading(node.name)) }
+
+        viewModelScope.launch {
+            val preview = withContext(Dispatchers.IO) {
+                try {
+                    loadPreview(node.name, entry)
+                } catch (e: Exception) {
+                    ArchivePreview.Unavailable(node.name, "Could not read file: ${e.message}")
+                }
+            }
+            // Ignore the result if the preview was dismissed or replaced meanwhile
+            _uiState.update { state ->
+                if (state.preview is ArchivePreview.Loading && state.preview.name == node.name) {
+                    state.copy(preview = preview)
+                } else {
+                    state
+                }
+            }
+        }
+    }
+
+    fun dismissPreview() {
+        _uiState.update { it.copy(preview = null) }
+    }
+
+    private fun loadPreview(name: String, entry: RpaEntry): ArchivePreview {
+        val extension = name.substringAfterLast('.', "").lowercase()
+        return when {
+            RpaThumbnailCache.isImage(name) -> {
+                val bitmap = thumbnails?.load(entry, RpaThumbnailCache.PREVIEW_SIZE)
+                if (bitmap != null) {
+                    ArchivePreview.Image(name, bitmap)
+                } else {
+                    ArchivePreview.Unavailable(name, "This image could not be decoded")
+                }
+            }
+            extension in TEXT_EXTENSIONS -> {
+                val limit = minOf(entry.length, MAX_TEXT_PREVIEW_BYTES.toLong()).toInt()
+                val bytes = archive!!.openStream(entry).use { input ->
+                    val buffer = ByteArray(limit)
+                    var read = 0
+                    while (read < limit) {
+                        val count = input.read(buffer, read, limit - read)
+                        if (count < 0) break
+                        read += count
+                    }
+                    buffer.copyOf(read)
+                }
+                ArchivePreview.Text(name, String(bytes, Charsets.UTF_8), entry.length > limit)
+            }
+            else -> ArchivePreview.Unavailable(name, "No preview for .$extension files")
+        }
+    }
+
+    private fun buildTree(entries: Collection<RpaEntry>) {
+        for (entry in entries) {
+            val parent = entry.name.substringBeforeLast('/', "")
+            filesByDirectory.getOrPut(parent) { mutableListOf() }.add(entry)
+
+            // Register each ancestor with its parent and add this file to its totals
+            var directory = parent
+            while (true) {
+                val totals = directoryTotals.getOrPut(directory) { LongArray(2) }
+                totals[0]++
+                totals[1] += entry.length
+                if (directory.isEmpty()) break
+                val grandparent = directory.substringBeforeLast('/', "")
+                subdirectories.getOrPut(grandparent) { mutableSetOf() }.add(directory)
+                directory = grandparent
+            }
+        }
+    }
+
+    private fun listDirectory(path: String): List<ArchiveNode> {
+        val directories = subdirectories[path].orEmpty().map { directory ->
+            val totals = directoryTotals[directory] ?: LongArray(2)
+            ArchiveNode(
+                name = directory.substringAfterLast('/'),
+                path = directory,
+                isDirectory = true,
+                fileCount = totals[0].toInt(),
+                size = totals[1]
+            )
+        }.sortedWith(compareBy(String.CASE_INSENSITIVE_ORDER) { it.name })
+
+        val files = filesByDirectory[path].orEmpty().map { entry ->
+            ArchiveNode(
+                name = entry.name.substringAfterLast('/'),
+                path = entry.name,
+                isDirectory = false,
+                entry = entry,
+                size = entry.length
+            )
+        }.sortedWith(compareBy(String.CASE_INSENSITIVE_ORDER) { it.name })
+
+        return directories + files
+    }
+
+    override fun onCleared() {
+        super.onCleared()
+        archive?.close()
+        archive = null
+    }
+}
@@ -92,12 +92,19 @@ class FilePickerViewModel(application: Application) : AndroidViewModel(applicati
                 // Apply file filter if in FILE mode (case-insensitive)
                 val state = _uiState.value
 
-                // Special handling for compress mode - show directories AND .apk files
+                // Special handling for compress mode - show directories, .apk and .rpa files
                 if (state.mode == FilePickerUiState.MODE_DIRECTORY &&
                     state.fileFilter == "compress_source" &&
                     !file.isDirectory) {
-                    // In compress mode, only show .apk files (skip other files)
-                    if (!file.name.lowercase().endsWith(".apk")) {
+                    // In compress mode, only show .apk and .rpa files (skip other files)
+                    if (!file.name.lowercase().endsWith(".apk") && !file.name.lowercase().endsWith(".rpa")) {
+                        continue
+                    }
+                } else if (state.mode == FilePickerUiState.MODE_DIRECTORY &&
+                    state.fileFilter == "decompile_source" &&
+                    !file.isDirectory) {
+                    // In decompile mode, archives can be decompiled without extracting them
+                    if (!file.name.lowercase().endsWith(".rpa")) {
                         continue
                     }
                 } else if (state.mode == FilePickerUiState.MODE_FILE &&
@@ -34,7 +34,9 @@ data class ProgressUiState(
     val operation: String = "",
     // Compression-specific fields
     val originalSizeBytes: Long = 0,
-    val compressedSizeBytes: Long = 0
+    val compressedSizeBytes: Long = 0,
+    // Throughput for byte-level operations (extraction)
+    val megabytesPerSecond: Double = 0.0
 )
 
 class ProgressViewModel(application: Application) : AndroidViewModel(application) {
@@ -121,6 +123,8 @@ class ProgressViewModel(application: Application) : AndroidViewModel(application
             }
             data.operation == "extract" -> "Extracting RPA..."
             data.operation == "decompile" -> "Decompiling RPYC..."
+            data.operation == "verify" -> "Verifying RPA..."
+            data.operation == "patch" -> "Creating patch..."
             data.operation == "compress_images" -> "Compressing Images..."
             data.operation == "compress_audio" -> "Compressing Audio..."
             data.operation == "compress_video" -> "Compressing Video..."
@@ -148,11 +152,12 @@ class ProgressViewModel(application: Application) : AndroidViewModel(application
         val fileCount = String.format(Locale.US, "%d/%d", data.processedFiles, data.totalFiles)
         val currentFile = data.currentFile?.takeIf { it.isNotEmpty() } ?: "Initializing..."
 
+        val megabytesPerSecond = data.megabytesPerSecond
         val speed = data.filesPerSecond.let {
-            if (it > 0) {
-                String.format(Locale.US, "%.1f files/sec", it)
-            } else {
-                "calculating..."
+            when {
+                megabytesPerSecond > 0 -> String.format(Locale.US, "%.1f MB/s (%.1f files/sec)", megabytesPerSecond, it)
+                it > 0 -> String.format(Locale.US, "%.1f files/sec", it)
+                else -> "calculating..."
             }
         }
 
@@ -193,7 +198,8 @@ class ProgressViewModel(application: Application) : AndroidViewModel(application
                     elapsedMs = data.getElapsedMs(),
                     operation = data.operation,
                     originalSizeBytes = data.originalSizeBytes,
-                    compressedSizeBytes = data.compressedSizeBytes
+                    compressedSizeBytes = data.compressedSizeBytes,
+                    megabytesPerSecond = megabytesPerSecond
                 )
             }
         }
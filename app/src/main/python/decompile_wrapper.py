@@ -3,16 +3,41 @@ Decompile Wrapper for Android
 Provides simple function to decompile .rpyc files to .rpy scripts
 """
 
+import hashlib
+import io
 import os
 import sys
 import json
 import time
+import traceback
+from concurrent.futures import ProcessPoolExecutor, ThreadPoolExecutor, as_completed
+from concurrent.futures.process import BrokenProcessPool
 from pathlib import Path
 
 # Add unrpyc to path
 sys.path.insert(0, os.path.join(os.path.dirname(__file__), 'unrpyc'))
 
-from unrpyc import decompile_rpyc, Context
+from unrpyc import decompile_rpyc, get_ast, write_ast, Context
+import deobfuscate
+from rpa_wrapper import open_archive
+
+# Upper bound for worker threads; threads only overlap file I/O and zlib inflation,
+# which release the GIL, so more of them do not help
+MAX_DECOMPILE_THREADS = 4
+
+# Directory for decompilation manifests, enabled by set_cache_dir()
+_cache_dir = None
+
+
+def set_cache_dir(cache_dir):
+    """
+    Enable decompilation manifests, which incremental mode needs
+
+    Args:
+        cache_dir: Directory for manifests (inside the app cache dir)
+    """
+    global _cache_dir
+    _cache_dir = cache_dir
 
 
 def _write_progress(progress_file, data):
@@ -26,17 +51,260 @@ def _write_progress(progress_file, data):
         pass  # Fail silently - don't crash if progress file write fails
 
 
-def decompile_directory(source_dir, progress_file=None, try_harder=False):
+def _manifest_path(source_dir):
+    """Manifest file of a source directory, or None without a cache directory"""
+    if not _cache_dir:
+        return None
+    key = hashlib.sha1(os.path.realpath(source_dir).encode('utf-8')).hexdigest()
+    return os.path.join(_cache_dir, key + '.json')
+
+
+def _read_manifest(path):
+    """
+    Read a decompilation manifest
+
+    Returns:
+        dict of relative .rpyc path -> {'size', 'mtime', 'hash', 'output'}, where
+        hash and output are SHA-1 hashes of the .rpyc and of the .rpy written from it
+    """
+    if not path or not os.path.isfile(path):
+        return {}
+    try:
+        with open(path, 'r', encoding='utf-8') as f:
+            return json.load(f).get('files', {})
+    except (OSError, ValueError):
+        return {}
+
+
+def _write_manifest(path, files):
+    """Write a decompilation manifest, replacing the old one only once complete"""
+    if not path:
+        return
+    try:
+        os.makedirs(os.path.dirname(path), exist_ok=True)
+        temp_path = path + '.tmp'
+        with open(temp_path, 'w', encoding='utf-8') as f:
+            json.dump({'version': 1, 'files': files}, f)
+        os.replace(temp_path, path)
+    except OSError:
+        pass  # Only incremental runs lose out without a manifest
+
+
+def _file_hash(path):
+    """SHA-1 of a file's contents"""
+    with open(path, 'rb') as f:
+        return hashlib.sha1(f.read()).hexdigest()
+
+
+def _decompile_file(task):
+    """
+    Decompile one file, as unrpyc's worker_common does
+
+    Runs in worker processes as well as threads, so it takes and returns only
+    plain picklable values.
+
+    In incremental mode an existing output is replaced when the .rpyc changed
+    since the manifest entry was recorded and the output is still exactly what
+    was decompiled then. Outputs edited since, and outputs without a manifest
+    entry, are left alone.
+
+    Args:
+        task: (path, try_harder, incremental, manifest entry or None) tuple
+
+    Returns:
+        (path, state, log lines, manifest entry or None) tuple. state is a Context
+        state, 'updated' for a replaced output or 'edited' for a kept edited one.
+        A failed file keeps its entry only while its output is unchanged, so the
+        next run decompiles it again
+    """
+    path, try_harder, incremental, entry = task
+    rpyc_path = Path(path)
+    out_path = rpyc_path.with_suffix('.rpym' if rpyc_path.suffix == '.rpymc' else '.rpy')
+    context = Context()
+
+    try:
+        stat = rpyc_path.stat()
+        rpyc_hash = None
+        overwrite = False
+
+        if incremental and entry and out_path.exists():
+            if entry['size'] == stat.st_size and entry['mtime'] == stat.st_mtime_ns:
+                context.log('Skipping {}, unchanged since it was decompiled.'.format(path))
+                context.set_state('skip')
+                return path, context.state, list(context.log_contents), entry
+
+            rpyc_hash = _file_hash(rpyc_path)
+            if rpyc_hash == entry['hash']:
+                # Copied or touched, but the same script
+                context.log('Skipping {}, unchanged since it was decompiled.'.format(path))
+                context.set_state('skip')
+                entry = dict(entry, size=stat.st_size, mtime=stat.st_mtime_ns)
+                return path, context.state, list(context.log_contents), entry
+
+            if _file_hash(out_path) != entry['output']:
+                context.log('Keeping {}, it was edited since it was decompiled.'.format(out_path.name))
+                context.set_state('edited')
+                return path, context.state, list(context.log_contents), entry
+
+            overwrite = True
+
+        # Decompile the file (overwrite=False means skip if .rpy exists)
+        decompile_rpyc(
+            rpyc_path,
+            context,
+            overwrite=overwrite,  # Only replace outputs known to be stale
+            try_harder=try_harder,  # Aggressive mode for obfuscated files
+            dump=False,           # Decompile, don't dump AST
+            comparable=False,
+            no_pyexpr=False,
+            translator=None,
+            init_offset=True,
+            sl_custom_names=None
+        )
+
+        if context.state == 'ok':
+            entry = {
+                'size': stat.st_size,
+                'mtime': stat.st_mtime_ns,
+                'hash': rpyc_hash or _file_hash(rpyc_path),
+                'output': _file_hash(out_path)
+            }
+            if overwrite:
+                context.set_state('updated')
+    except Exception:
+        context.log('Error while decompiling {}:'.format(path))
+        context.log(traceback.format_exc())
+
+    if context.state not in ('ok', 'updated') and entry is not None:
+        # Keep the entry only while it still describes the output on disk, so the next run
+        # retries the file instead of taking a damaged output for an edited one
+        try:
+            if _file_hash(out_path) != entry['output']:
+                entry = None
+        except OSError:
+            entry = None
+    return path, context.state, list(context.log_contents), entry
+
+
+def _decompile_entry(task):
+    """
+    Decompile one .rpyc read from an archive, writing nothing but its output
+
+    The worker reads the entry itself with its own file handle, so only the scripts
+    being decompiled are in memory, and only the .rpy/.rpym reaches the disk.
+    Existing outputs are skipped, as decompile_rpyc does without overwrite.
+
+    Args:
+        task: (entry name, archive path, (offset, length, prefix) of the entry,
+            output path, try_harder) tuple
+
+    Returns:
+        (entry name, state, log lines, None) tuple, like _decompile_file
+    """
+    name, rpa_file_path, (offset, length, prefix), out_path, try_harder = task
+    out_path = Path(out_path)
+    context = Context()
+
+    try:
+        if out_path.exists():
+            context.log('Skipping {}. {} already exists.'.format(name, out_path.name))
+            context.set_state('skip')
+        else:
+            context.log('Decompiling {} to {} ...'.format(name, out_path.name))
+            with open(rpa_file_path, 'rb') as f:
+                f.seek(offset)
+                data = prefix + f.read(length - len(prefix))
+            ast = get_ast(io.BytesIO(data), try_harder, context)
+            write_ast(ast, out_path, context, init_offset=True)
+    except Exception:
+        context.log('Error while decompiling {}:'.format(name))
+        context.log(traceback.format_exc())
+
+    return name, context.state, list(context.log_contents), None
+
+
+def _entry_output_path(output_dir, name):
+    """
+    Output path of an archived script below output_dir (.rpyc -> .rpy, .rpymc -> .rpym),
+    or None if the entry name would place it outside output_dir
+    """
+    root = os.path.realpath(output_dir)
+    out_path = os.path.realpath(os.path.join(root, name.lstrip('/')[:-1]))
+    if os.path.commonpath([root, out_path]) != root:
+        return None
+    return out_path
+
+
+def _process_pool_supported():
+    """
+    Whether decompilation can use worker processes here
+
+    Android app processes cannot fork safely and Chaquopy ships without sem_open,
+    so worker processes are only used where multiprocessing fully works.
+    """
+    if hasattr(sys, 'getandroidapilevel'):
+        return False
+    try:
+        import multiprocessing.synchronize  # noqa: F401 - fails without sem_open
+    except ImportError:
+        return False
+    return True
+
+
+def _run_decompile_workers(tasks, workers, on_result, worker=_decompile_file):
+    """
+    Decompile files in parallel, calling on_result with each result of
+    worker (_decompile_file or _decompile_entry) as it finishes
+
+    Uses a process pool where the platform allows it and threads otherwise. If the
+    process pool breaks, the files it did not finish are decompiled with threads.
+    Each run starts without a remembered deobfuscation strategy, as its files may
+    come from another game; workers then learn the strategy of this one.
+
+    Returns:
+        Description of the workers used, e.g. '3 worker processes'
+    """
+    deobfuscate.reset_strategy()
+    done = set()
+    if _process_pool_supported() and workers > 1:
+        try:
+            with ProcessPoolExecutor(max_workers=workers) as executor:
+                futures = [executor.submit(worker, task) for task in tasks]
+                for future in as_completed(futures):
+                    result = future.result()
+                    done.add(result[0])
+                    on_result(*result)
+            return '{} worker processes'.format(workers)
+        except (BrokenProcessPool, ImportError, NotImplementedError, OSError):
+            pass
+
+    threads = max(1, min(workers, MAX_DECOMPILE_THREADS))
+    with ThreadPoolExecutor(max_workers=threads) as executor:
+        futures = [executor.submit(worker, task) for task in tasks if task[0] not in done]
+        for future in as_completed(futures):
+            on_result(*future.result())
+    return '{} worker thread{}'.format(threads, '' if threads == 1 else 's')
+
+
+def decompile_directory(source_dir, progress_file=None, try_harder=False, workers=0, incremental=False):
     """
     Decompile all .rpyc files in a directory recursively
 
+    Files are decompiled in parallel (see _run_decompile_workers), largest first
+    so a big script starting last does not leave one worker running alone.
+
     Args:
         source_dir: Directory containing .rpyc files to decompile
         progress_file: Optional path to write progress JSON updates
         try_harder: Enable aggressive decompilation for obfuscated files (slower)
+        workers: Number of parallel workers, 0 = one less than the CPU count
+        incremental: Replace outputs of changed .rpyc files that were not edited since
+            (see _decompile_file); needs set_cache_dir()
 
     Returns:
-        dict with 'success' (bool), 'message' (str), 'stats' (dict)
+        dict with 'success' (bool), 'message' (str), 'stats' (dict); stats['errors']
+        maps each failed file to its decompilation log, stats['updated'] counts
+        replaced outputs and stats['edited'] the edited outputs that were kept
     """
     start_time = time.time()
 
@@ -122,51 +390,53 @@ def decompile_directory(source_dir, progress_file=None, try_harder=False):
                 'errorMessage': ''
             })
 
-        # Decompile each file
-        stats = {'success': 0, 'skipped': 0, 'failed': 0}
+        # Decompile all files, collecting each file's state as it finishes
+        stats = {'success': 0, 'skipped': 0, 'failed': 0, 'updated': 0, 'edited': 0}
+        errors = {}
+
+        # Every run records what it decompiled, so incremental mode works on the next one
+        manifest_path = _manifest_path(source_dir)
+        manifest = _read_manifest(manifest_path)
+        new_manifest = {}
+
+        if workers <= 0:
+            workers = max(1, (os.cpu_count() or 1) - 1)
+        workers = min(workers, total_files)
+        rpyc_files.sort(key=lambda path: path.stat().st_size, reverse=True)
 
-        for idx, rpyc_file in enumerate(rpyc_files):
-            context = Context()
-
-            try:
-                # Update progress before processing
-                if progress_file and (idx % 5 == 0 or idx == total_files - 1):
-                    _write_progress(progress_file, {
-                        'operation': 'decompile',
-                        'totalFiles': total_files,
-                        'processedFiles': idx,
-                        'currentFile': str(rpyc_file.name),
-                        'startTime': int(start_time * 1000),
-                        'lastUpdateTime': int(time.time() * 1000),
-                        'status': 'in_progress',
-                        'errorMessage': ''
-                    })
-
-                # Decompile the file (overwrite=False means skip if .rpy exists)
-                decompile_rpyc(
-                    rpyc_file,
-                    context,
-                    overwrite=False,      # Skip if .rpy already exists
-                    try_harder=try_harder,  # Aggressive mode for obfuscated files
-                    dump=False,           # Decompile, don't dump AST
-                    comparable=False,
-                    no_pyexpr=False,
-                    translator=None,
-                    init_offset=True,
-                    sl_custom_names=None
-                )
-
-                # Check result
-                if context.state == 'ok':
-                    stats['success'] += 1
-                elif context.state == 'skip':
-                    stats['skipped'] += 1
-                else:
-                    stats['failed'] += 1
-
-            except Exception as e:
+        def on_result(path, state, log, entry):
+            if entry is not None:
+                new_manifest[os.path.relpath(path, source_dir)] = entry
+
+            if state in ('ok', 'updated'):
+                stats['success'] += 1
+                if state == 'updated':
+                    stats['updated'] += 1
+            elif state in ('skip', 'edited'):
+                stats['skipped'] += 1
+                if state == 'edited':
+                    stats['edited'] += 1
+            else:
                 stats['failed'] += 1
-                # Continue with next file even if one fails
+                errors[os.path.relpath(path, source_dir)] = '\n'.join(log)
+
+            processed = stats['success'] + stats['skipped'] + stats['failed']
+            if progress_file and (processed % 5 == 1 or processed == total_files):
+                _write_progress(progress_file, {
+                    'operation': 'decompile',
+                    'totalFiles': total_files,
+                    'processedFiles': processed,
+                    'currentFile': str(os.path.basename(path)),
+                    'startTime': int(start_time * 1000),
+                    'lastUpdateTime': int(time.time() * 1000),
+                    'status': 'in_progress',
+                    'errorMessage': ''
+                })
+
+        tasks = [(str(path), try_harder, incremental, manifest.get(os.path.relpath(str(path), source_dir)))
+                 for path in rpyc_files]
+        worker_description = _run_decompile_workers(tasks, workers, on_result)
+        _write_manifest(manifest_path, new_manifest)
 
         # Mark decompilation as completed
         if progress_file:
@@ -182,13 +452,17 @@ def decompile_directory(source_dir, progress_file=None, try_harder=False):
             })
 
         stats['total'] = total_files
+        stats['errors'] = errors
 
-        message = str('Decompiled {} files ({} successful, {} skipped, {} failed)'.format(
+        message = str('Decompiled {} files ({} successful, {} skipped, {} failed) using {}'.format(
             total_files,
             stats['success'],
             stats['skipped'],
-            stats['failed']
+            stats['failed'],
+            worker_description
         ))
+        if stats['updated'] or stats['edited']:
+            message += str(', {} updated, {} edited kept'.format(stats['updated'], stats['edited']))
 
         return dict(
             success=True,
@@ -214,3 +488,163 @@ def decompile_directory(source_dir, progress_file=None, try_harder=False):
             message=error_msg,
             stats=dict(total=0, success=0, skipped=0, failed=0)
         )
+
+
+def decompile_rpa(rpa_file_path, output_dir, progress_file=None, try_harder=False, workers=0):
+    """
+    Decompile the .rpyc/.rpymc files inside an RPA archive without extracting it
+
+    Script entries are read from the archive by the workers decompiling them, in
+    parallel, so at most one script per worker is in memory. Only the resulting
+    .rpy/.rpym files are written, at their archive paths under output_dir; nothing
+    else from the archive touches disk. Entries whose paths lead outside output_dir fail.
+
+    Args:
+        rpa_file_path: Path to the .rpa file
+        output_dir: Directory to write scripts to, usually the game folder holding the archive
+        progress_file: Optional path to write progress JSON updates
+        try_harder: Enable aggressive decompilation for obfuscated files (slower)
+        workers: Number of parallel workers, 0 = one less than the CPU count
+
+    Returns:
+        dict with 'success' (bool), 'message' (str), 'stats' (dict), as decompile_directory
+    """
+    start_time = time.time()
+    total_files = 0
+
+    try:
+        archive = open_archive(rpa_file_path)
+        names = [name for name in archive.list() if name.lower().endswith(('.rpyc', '.rpymc'))]
+        total_files = len(names)
+
+        if total_files == 0:
+            error_msg = 'No .rpyc files found in archive'
+            if progress_file:
+                _write_progress(progress_file, {
+                    'operation': 'decompile',
+                    'totalFiles': 0,
+                    'processedFiles': 0,
+                    'currentFile': '',
+                    'startTime': int(start_time * 1000),
+                    'lastUpdateTime': int(time.time() * 1000),
+                    'status': 'failed',
+                    'errorMessage': error_msg
+                })
+            return dict(
+                success=False,
+                message=error_msg,
+                stats=dict(total=0, success=0, skipped=0, failed=0)
+            )
+
+        if progress_file:
+            _write_progress(progress_file, {
+                'operation': 'decompile',
+                'totalFiles': total_files,
+                'processedFiles': 0,
+                'currentFile': 'Reading archive index...',
+                'startTime': int(start_time * 1000),
+                'lastUpdateTime': int(time.time() * 1000),
+                'status': 'in_progress',
+                'errorMessage': ''
+            })
+
+        # Workers read their entries themselves; only the index is needed here
+        tasks = []
+        escaping = []
+        directories = set()
+        for name in names:
+            out_path = _entry_output_path(output_dir, name)
+            if out_path is None:
+                escaping.append(name)
+                continue
+            directories.add(os.path.dirname(out_path))
+            tasks.append((name, rpa_file_path, archive.get_entry(name), out_path, try_harder))
+        archive.handle.close()
+
+        for directory in directories:
+            os.makedirs(directory, exist_ok=True)
+
+        # Largest scripts first, as in decompile_directory
+        tasks.sort(key=lambda task: task[2][1], reverse=True)
+
+        stats = {'success': 0, 'skipped': 0, 'failed': 0}
+        errors = {}
+
+        if workers <= 0:
+            workers = max(1, (os.cpu_count() or 1) - 1)
+        workers = max(1, min(workers, len(tasks)))
+
+        def on_result(name, state, log, entry):
+            if state == 'ok':
+                stats['success'] += 1
+            elif state == 'skip':
+                stats['skipped'] += 1
+            else:
+                stats['failed'] += 1
+                errors[name] = '\n'.join(log)
+
+            processed = stats['success'] + stats['skipped'] + stats['failed']
+            if progress_file and (processed % 5 == 1 or processed == total_files):
+                _write_progress(progress_file, {
+                    'operation': 'decompile',
+                    'totalFiles': total_files,
+                    'processedFiles': processed,
+                    'currentFile': str(os.path.basename(name)),
+                    'startTime': int(start_time * 1000),
+                    'lastUpdateTime': int(time.time() * 1000),
+                    'status': 'in_progress',
+                    'errorMessage': ''
+                })
+
+        for name in escaping:
+            on_result(name, 'error', ['Entry path escapes the output directory: {}'.format(name)], None)
+        worker_description = _run_decompile_workers(tasks, workers, on_result, worker=_decompile_entry)
+
+        if progress_file:
+            _write_progress(progress_file, {
+                'operation': 'decompile',
+                'totalFiles': total_files,
+                'processedFiles': total_files,
+                'currentFile': 'Complete',
+                'startTime': int(start_time * 1000),
+                'lastUpdateTime': int(time.time() * 1000),
+                'status': 'completed',
+                'errorMessage': ''
+            })
+
+        stats['total'] = total_files
+        stats['errors'] = errors
+
+        message = str('Decompiled {} files from {} ({} successful, {} skipped, {} failed) using {}'.format(
+            total_files,
+            os.path.basename(rpa_file_path),
+            stats['success'],
+            stats['skipped'],
+            stats['failed'],
+            worker_description
+        ))
+
+        return dict(
+            success=True,
+            message=message,
+            stats=stats
+        )
+
+    except Exception as e:
+        error_msg = str('Error: {}'.format(str(e)))
+        if progress_file:
+            _write_progress(progress_file, {
+                'operation': 'decompile',
+                'totalFiles': total_files,
+                'processedFiles': 0,
+                'currentFile': '',
+                'startTime': int(start_time * 1000),
+                'lastUpdateTime': int(time.time() * 1000),
+                'status': 'failed',
+                'errorMessage': error_msg
+            })
+        return dict(
+            success=False,
+            message=error_msg,
+            stats=dict(total=0, success=0, skipped=0, failed=0)
+        )
@@ -0,0 +1,103 @@
+"""
+Entry filters for selective RPA extraction
+Mirrors com.renpytool.rpa.RpaFilter so both readers select the same files.
+
+Filter expressions are whitespace-separated terms:
+    *.rpyc          glob; without a '/' it matches the file name, otherwise the whole path
+    gui/**          '**' also matches across directories, '*' and '?' do not
+    ext:png,jpg     extension set
+    min:10K         minimum size (K, M and G suffixes are binary multiples)
+    max:5M          maximum size
+
+A file is selected when it matches any glob or extension term (or there are none)
+and lies within the size bounds.
+"""
+
+import re
+
+_SIZE_SUFFIXES = {'': 1, 'K': 1024, 'M': 1024 ** 2, 'G': 1024 ** 3}
+
+
+def _glob_to_regex(pattern):
+    parts = []
+    i = 0
+    while i < len(pattern):
+        c = pattern[i]
+        if c == '*':
+            if pattern[i:i + 2] == '**':
+                parts.append('.*')
+                i += 2
+                continue
+            parts.append('[^/]*')
+        elif c == '?':
+            parts.append('[^/]')
+        else:
+            parts.append(re.escape(c))
+        i += 1
+    return re.compile(''.join(parts) + r'\Z', re.IGNORECASE)
+
+
+def _parse_size(text):
+    match = re.match(r'^(\d+)([KMG]?)B?$', text.strip().upper())
+    if not match:
+        raise ValueError('invalid size: {}'.format(text))
+    return int(match.group(1)) * _SIZE_SUFFIXES[match.group(2)]
+
+
+class ExtractionFilter(object):
+    """Parsed filter expression"""
+
+    def __init__(self, expression):
+        self.path_globs = []
+        self.name_globs = []
+        self.extensions = set()
+        self.min_size = None
+        self.max_size = None
+
+        for term in (expression or '').split():
+            lower = term.lower()
+            if lower.startswith('ext:'):
+                for ext in term[4:].split(','):
+                    if ext:
+                        self.extensions.add(ext.lstrip('.').lower())
+            elif lower.startswith('min:'):
+                self.min_size = _parse_size(term[4:])
+            elif lower.startswith('max:'):
+                self.max_size = _parse_size(term[4:])
+            elif '/' in term:
+                self.path_globs.append(_glob_to_regex(term.lstrip('/')))
+            else:
+                self.name_globs.append(_glob_to_regex(term))
+
+    def matches(self, filename, size):
+        if self.min_size is not None and size < self.min_size:
+            return False
+        if self.max_size is not None and size > self.max_size:
+            return False
+        if not (self.path_globs or self.name_globs or self.extensions):
+            return True
+
+        name = filename.rsplit('/', 1)[-1]
+        if self.extensions and '.' in name and name.rsplit('.', 1)[1].lower() in self.extensions:
+            return True
+        if any(glob.match(filename) for glob in self.path_globs):
+            return True
+        return any(glob.match(name) for glob in self.name_globs)
+
+
+def select_files(archive, expression):
+    """
+    List the files of a loaded archive selected by a filter expression, using only its index
+
+    Returns:
+        (files, total_size)
+    """
+    selector = ExtractionFilter(expression)
+    files = []
+    total_size = 0
+    for filename in archive.indexes.keys():
+        size = archive.get_entry(filename)[1]
+        if selector.matches(filename, size):
+            files.append(filename)
+            total_size += size
+    return files, total_size
@@ -0,0 +1,123 @@
+"""
+On-disk cache of RPA archive indexes
+Saves re-inflating and unpickling the index every time an archive is opened.
+The file format is shared with the JVM reader (com.renpytool.rpa.RpaIndexCache).
+"""
+
+import hashlib
+import os
+import struct
+
+MAGIC = b'RPAIDX'
+FORMAT_VERSION = 1
+
+# Oldest cache files are removed once there are more than this many
+MAX_CACHED_ARCHIVES = 64
+
+# Layout (big-endian):
+#   magic, u16 format version, u16 path length + canonical path (utf-8),
+#   u64 archive size, u64 archive mtime (ms), u64 key, u64 total size, u32 entry count,
+#   per entry: u16 name length + name (utf-8), u64 offset, u64 length, u16 prefix length + prefix
+_HEADER = struct.Struct('>QQQQI')
+_ENTRY = struct.Struct('>QQH')
+
+
+class IndexCache(object):
+    """Index cache stored in a directory, keyed by canonical path, size and mtime"""
+
+    def __init__(self, directory):
+        self.directory = directory
+
+    def _stat(self, filename):
+        canonical = os.path.realpath(filename)
+        stat = os.stat(canonical)
+        return canonical, stat.st_size, stat.st_mtime_ns // 1000000
+
+    def _cache_path(self, canonical):
+        digest = hashlib.sha1(canonical.encode('utf-8')).hexdigest()
+        return os.path.join(self.directory, digest + '.idx')
+
+    def lookup(self, filename):
+        """
+        Get the cached index of an archive
+
+        Returns:
+            (key, indexes) with deobfuscated indexes, or None if there is no valid entry
+        """
+        try:
+            canonical, size, mtime = self._stat(filename)
+            with open(self._cache_path(canonical), 'rb') as f:
+                data = memoryview(f.read())
+        except (IOError, OSError):
+            return None
+
+        try:
+            if bytes(data[:6]) != MAGIC or struct.unpack_from('>H', data, 6)[0] != FORMAT_VERSION:
+                return None
+            pos = 8
+            (path_length,) = struct.unpack_from('>H', data, pos)
+            pos += 2
+            path = bytes(data[pos:pos + path_length]).decode('utf-8')
+            pos += path_length
+
+            (cached_size, cached_mtime, key, total_size, count) = _HEADER.unpack_from(data, pos)
+            pos += _HEADER.size
+            if path != canonical or cached_size != size or cached_mtime != mtime:
+                return None
+
+            indexes = {}
+            for _ in range(count):
+                (name_length,) = struct.unpack_from('>H', data, pos)
+                pos += 2
+                name = bytes(data[pos:pos + name_length]).decode('utf-8')
+                pos += name_length
+                (offset, length, prefix_length) = _ENTRY.unpack_from(data, pos)
+                pos += _ENTRY.size
+                if prefix_length:
+                    indexes[name] = [ (offset, length, bytes(data[pos:pos + prefix_length])) ]
+                    pos += prefix_length
+                else:
+                    indexes[name] = [ (offset, length) ]
+            return key, indexes
+        except (struct.error, UnicodeDecodeError):
+            return None
+
+    def store(self, filename, key, indexes):
+        """Cache the deobfuscated indexes of an archive, ignoring write errors"""
+        try:
+            canonical, size, mtime = self._stat(filename)
+            path_bytes = canonical.encode('utf-8')
+
+            parts = [MAGIC, struct.pack('>HH', FORMAT_VERSION, len(path_bytes)), path_bytes, None]
+            total_size = 0
+            for name, entry in indexes.items():
+                offset, length = entry[0][0], entry[0][1]
+                prefix = entry[0][2] if len(entry[0]) == 3 else b''
+                if not isinstance(prefix, bytes):
+                    prefix = prefix.encode('latin1')
+                name_bytes = name.encode('utf-8')
+                parts.append(struct.pack('>H', len(name_bytes)))
+                parts.append(name_bytes)
+                parts.append(_ENTRY.pack(offset, length, len(prefix)))
+                parts.append(prefix)
+                total_size += length
+            parts[3] = _HEADER.pack(size, mtime, key & 0xFFFFFFFFFFFFFFFF, total_size, len(indexes))
+
+            if not os.path.isdir(self.directory):
+                os.makedirs(self.directory)
+            cache_path = self._cache_path(canonical)
+            temp_path = cache_path + '.tmp'
+            with open(temp_path, 'wb') as f:
+                f.write(b''.join(parts))
+            os.replace(temp_path, cache_path)
+            self._prune()
+        except Exception:
+            pass  # Caching is best-effort
+
+    def _prune(self):
+        files = [os.path.join(self.directory, name) for name in os.listdir(self.directory) if name.endswith('.idx')]
+        if len(files) <= MAX_CACHED_ARCHIVES:
+            return
+        files.sort(key=os.path.getmtime)
+        for path in files[:len(files) - MAX_CACHED_ARCHIVES]:
+            os.remove(path)
@@ -3,11 +3,76 @@ RPA Wrapper for Android
 Provides simple functions to extract and create RPA archives
 """
 
+import errno
+import hashlib
+import heapq
 import os
+import re
 import sys
 import json
+import threading
 import time
+from concurrent.futures import ThreadPoolExecutor
 from rpatool import RenPyArchive
+from rpa_index_cache import IndexCache
+from rpa_filter import select_files
+
+# Size of the buffer used to copy entries out of archives
+EXTRACT_BUFFER_SIZE = 1024 * 1024
+
+# Upper bound for a run of contiguous entries read in one forward pass
+MAX_RUN_BYTES = 64 * 1024 * 1024
+
+# Entries at least this large are copied kernel-side with os.sendfile
+ZERO_COPY_MIN_BYTES = 1024 * 1024
+
+# Cleared the first time sendfile turns out not to work between regular files
+_zero_copy_supported = hasattr(os, 'sendfile')
+
+# Extracted files at least this large are preallocated to their final length, so the
+# filesystem can place them in one extent; smaller files are written in one call anyway
+PREALLOCATE_MIN_BYTES = 64 * 1024
+
+# Cleared the first time the output filesystem (e.g. FUSE /sdcard) rejects posix_fallocate
+_preallocate_supported = hasattr(os, 'posix_fallocate')
+
+# Flags for extracted files; os.open skips the fstat and buffer setup of open()
+_OUTPUT_FLAGS = os.O_WRONLY | os.O_CREAT | os.O_TRUNC | getattr(os, 'O_CLOEXEC', 0) | getattr(os, 'O_BINARY', 0)
+
+# Upper bound for concurrent volume writers when creating multi-volume archives
+MAX_VOLUME_WRITERS = 4
+
+# Upper bound for concurrent readers when verifying archives
+MAX_VERIFY_WORKERS = 8
+
+
+# Shared index cache, enabled by set_cache_dir()
+_index_cache = None
+
+# Directory for records of the archives create_rpa wrote, enabled by set_cache_dir()
+_volume_record_dir = None
+
+
+def set_cache_dir(cache_dir):
+    """
+    Enable the on-disk index cache and the records of created archives
+
+    Args:
+        cache_dir: Directory for cached indexes (inside the app cache dir)
+    """
+    global _index_cache, _volume_record_dir
+    _index_cache = IndexCache(cache_dir)
+    _volume_record_dir = os.path.join(cache_dir, 'volumes')
+
+
+def open_archive(rpa_file_path):
+    """
+    Open an existing archive, reusing its cached index when still valid (see set_cache_dir)
+
+    Returns:
+        rpatool.RenPyArchive with the archive's index loaded
+    """
+    return RenPyArchive(rpa_file_path, verbose=False, index_cache=_index_cache)
 
 
 def _write_progress(progress_file, data):
@@ -21,27 +86,29 @@ def _write_progress(progress_file, data):
         pass  # Fail silently - don't crash if progress file write fails
 
 
-def get_extraction_info(rpa_file_path):
+def get_extraction_info(rpa_file_path, filter_expr=None):
     """
     Get information about an RPA/ARC archive before extraction
 
     Args:
         rpa_file_path: Path to the .rpa or .arc file
+        filter_expr: Optional filter expression (see rpa_filter); only matching files are counted
 
     Returns:
         dict with 'success' (bool), 'total_size' (int), 'file_count' (int), 'message' (str)
     """
     try:
         # Load the archive
-        archive = RenPyArchive(rpa_file_path, verbose=False)
+        archive = open_archive(rpa_file_path)
 
-        # Get file count
-        files = archive.list()
+        # Get file count and total extracted size of the selected files
+        if filter_expr:
+            files, total_size = select_files(archive, filter_expr)
+        else:
+            files = archive.list()
+            total_size = archive.get_total_size()
         file_count = len(files)
 
-        # Get total extracted size
-        total_size = archive.get_total_size()
-
         return dict(
             success=True,
             total_size=int(total_size),
@@ -58,10 +125,195 @@ def get_extraction_info(rpa_file_path):
         )
 
 
-def extract_rpa(rpa_file_path, output_dir, progress_file=None, batch_index=0, batch_total=0, batch_filename=''):
+class ExtractionError(Exception):
+    """Error raised while extracting a specific archive entry"""
+
+    def __init__(self, filename, cause):
+        Exception.__init__(self, str(cause))
+        self.filename = filename
+
+
+def _plan_extraction(archive, files):
+    """
+    Plan a single forward pass over an archive
+
+    Entries are sorted by their physical offset in the archive, and entries whose
+    data directly follows each other are grouped into runs that can be read
+    without seeking.
+
+    Args:
+        archive: Loaded RenPyArchive
+        files: Names of the entries to extract
+
+    Returns:
+        list of (offset, length, entries) runs in file order, where entries is a
+        list of (filename, data_length, prefix) tuples
+    """
+    entries = []
+    for filename in files:
+        offset, length, prefix = archive.get_entry(filename)
+        entries.append((offset, length - len(prefix), prefix, filename))
+    entries.sort(key=lambda entry: entry[0])
+
+    runs = []
+    for offset, data_length, prefix, filename in entries:
+        if runs:
+            run_offset, run_length, run_entries = runs[-1]
+            if offset == run_offset + run_length and run_length < MAX_RUN_BYTES:
+                run_entries.append((filename, data_length, prefix))
+                runs[-1] = (run_offset, run_length + data_length, run_entries)
+                continue
+        runs.append((offset, data_length, [(filename, data_length, prefix)]))
+
+    return runs
+
+
+def _prepare_directories(output_dir, files):
+    """
+    Create the directory tree of the extracted files up front
+
+    Every directory is created once, parents first, with a single mkdir call,
+    instead of checking and creating the parent directory of every entry.
+
+    Args:
+        output_dir: Existing directory files are extracted to
+        files: Names of the entries to extract
+    """
+    directories = set()
+    for filename in files:
+        directory = os.path.dirname(filename)
+        while directory and directory not in directories:
+            directories.add(directory)
+            directory = os.path.dirname(directory)
+
+    # Parents sort before their children
+    for directory in sorted(directories):
+        try:
+            os.mkdir(os.path.join(output_dir, directory))
+        except FileExistsError:
+            pass
+
+
+def _preallocate(fd, length):
+    """Reserve the final length of an extracted file, where the filesystem supports it"""
+    global _preallocate_supported
+    if not _preallocate_supported or length < PREALLOCATE_MIN_BYTES:
+        return
+    try:
+        os.posix_fallocate(fd, 0, length)
+    except OSError as e:
+        if e.errno not in (errno.EINVAL, errno.ENOSYS, errno.EOPNOTSUPP):
+            raise
+        _preallocate_supported = False
+
+
+def _write_all(fd, data):
+    """Write all of data to a file descriptor"""
+    view = memoryview(data)
+    while view:
+        written = os.write(fd, view)
+        view = view[written:]
+
+
+def _sendfile_range(in_fd, out_fd, offset, count):
+    """
+    Copy a byte range between file descriptors without passing through Python
+
+    Returns:
+        False if sendfile is not supported here and nothing was copied, True once the range is copied
+    """
+    global _zero_copy_supported
+    copied = 0
+    while copied < count:
+        try:
+            sent = os.sendfile(out_fd, in_fd, offset + copied, min(count - copied, 0x7ffff000))
+        except OSError as e:
+            if copied == 0 and e.errno in (errno.EINVAL, errno.ENOSYS, errno.EOPNOTSUPP):
+                _zero_copy_supported = False
+                return False
+            raise
+        if not sent:
+            raise IOError('unexpected end of archive')
+        copied += sent
+    return True
+
+
+def _extract_run(archive, run, output_dir, buffer, on_entry):
+    """
+    Extract one run of contiguous entries with large sequential reads
+
+    The run is read front to back in buffer-sized blocks and each block is
+    split across the entries it covers, so small neighbouring entries share
+    a single read. Large entries are copied with sendfile instead.
+
+    Output files are written unbuffered, straight from the read buffer, and
+    preallocated to their length. Their directories must already exist
+    (see _prepare_directories).
+
+    Args:
+        archive: Loaded RenPyArchive
+        run: (offset, length, entries) tuple from _plan_extraction
+        output_dir: Directory to extract files to
+        buffer: Reusable bytearray for reads
+        on_entry: Called with (filename, size) after each entry is written
+    """
+    offset, run_remaining, entries = run
+    view = memoryview(buffer)
+    handle = archive.handle
+    handle.seek(offset)
+    # Archive position of the next byte to be read into the buffer
+    read_position = offset
+
+    # Valid bytes in the buffer and how many of them have been consumed
+    filled = 0
+    consumed = 0
+
+    for filename, data_length, prefix in entries:
+        try:
+            fd = os.open(os.path.join(output_dir, filename), _OUTPUT_FLAGS, 0o666)
+            try:
+                _preallocate(fd, data_length + len(prefix))
+                if prefix:
+                    _write_all(fd, prefix)
+
+                remaining = data_length
+                while remaining > 0:
+                    if consumed == filled and remaining >= ZERO_COPY_MIN_BYTES and _zero_copy_supported:
+                        # Nothing buffered for this entry, let the kernel copy the rest
+                        if _sendfile_range(handle.fileno(), fd, read_position, remaining):
+                            read_position += remaining
+                            run_remaining -= remaining
+                            remaining = 0
+                            handle.seek(read_position)
+                            break
+
+                    if consumed == filled:
+                        filled = handle.readinto(view[:min(len(buffer), run_remaining)])
+                        if not filled:
+                            raise IOError('unexpected end of archive')
+                        read_position += filled
+                        run_remaining -= filled
+                        consumed = 0
+
+                    count = min(remaining, filled - consumed)
+                    _write_all(fd, view[consumed:consumed + count])
+                    consumed += count
+                    remaining -= count
+            finally:
+                os.close(fd)
+        except Exception as e:
+            raise ExtractionError(filename, e)
+
+        on_entry(filename, data_length + len(prefix))
+
+
+def extract_rpa(rpa_file_path, output_dir, progress_file=None, batch_index=0, batch_total=0, batch_filename='', filter_expr=None):
     """
     Extract all files from an RPA archive
 
+    Entries are extracted in the order their data appears in the archive, so
+    the archive is read in one forward pass instead of seeking for every entry.
+
     Args:
         rpa_file_path: Path to the .rpa file
         output_dir: Directory to extract files to
@@ -69,19 +321,26 @@ def extract_rpa(rpa_file_path, output_dir, progress_file=None, batch_index=0, ba
         batch_index: Current file index in batch (0 = no batch)
         batch_total: Total files in batch (0 = no batch)
         batch_filename: Name of current file being processed
+        filter_expr: Optional filter expression (see rpa_filter); only matching files are extracted
 
     Returns:
-        dict with 'success' (bool), 'message' (str), and 'files' (list)
+        dict with 'success' (bool), 'message' (str), 'files' (list),
+        'bytes' (int) and 'mb_per_second' (float)
     """
     start_time = time.time()
 
     try:
         # Load the archive
-        archive = RenPyArchive(rpa_file_path, verbose=False)
+        archive = open_archive(rpa_file_path)
 
-        # Get list of files
-        files = archive.list()
+        # Get list of files and plan the read order
+        if filter_expr:
+            files, total_bytes = select_files(archive, filter_expr)
+        else:
+            files = archive.list()
+            total_bytes = archive.get_total_size()
         total_files = len(files)
+        runs = _plan_extraction(archive, files)
 
         # Initialize progress
         if progress_file:
@@ -94,62 +353,65 @@ def extract_rpa(rpa_file_path, output_dir, progress_file=None, batch_index=0, ba
                 'lastUpdateTime': int(time.time() * 1000),
                 'status': 'in_progress',
                 'errorMessage': '',
+                'totalBytes': total_bytes,
+                'processedBytes': 0,
                 'currentBatchIndex': batch_index,
                 'totalBatchCount': batch_total,
                 'currentBatchFileName': batch_filename
             })
 
-        # Create output directory if it doesn't exist
+        # Create the output directory tree once
         if not os.path.exists(output_dir):
             os.makedirs(output_dir)
+        _prepare_directories(output_dir, files)
 
-        # Extract each file
+        # Extract each run, streaming through one reusable buffer so memory use
+        # stays flat regardless of entry size
         extracted_files = []
-        for idx, filename in enumerate(files):
-            try:
-                contents = archive.read(filename)
+        processed_bytes = [0]  # Using list to allow modification in nested function
+        buffer = bytearray(EXTRACT_BUFFER_SIZE)
 
-                # Create subdirectories if needed
-                output_path = os.path.join(output_dir, filename)
-                output_file_dir = os.path.dirname(output_path)
-                if output_file_dir and not os.path.exists(output_file_dir):
-                    os.makedirs(output_file_dir)
+        def on_entry(filename, size):
+            extracted_files.append(str(filename))
+            processed_bytes[0] += size
+            processed = len(extracted_files)
 
-                # Write file
-                with open(output_path, 'wb') as f:
-                    f.write(contents)
-
-                extracted_files.append(str(filename))
-
-                # Update progress every 5 files (to reduce I/O)
-                if progress_file and (idx % 5 == 0 or idx == total_files - 1):
-                    _write_progress(progress_file, {
-                        'operation': 'extract',
-                        'totalFiles': total_files,
-                        'processedFiles': idx + 1,
-                        'currentFile': str(filename),
-                        'startTime': int(start_time * 1000),
-                        'lastUpdateTime': int(time.time() * 1000),
-                        'status': 'in_progress',
-                        'errorMessage': '',
-                        'currentBatchIndex': batch_index,
-                        'totalBatchCount': batch_total,
-                        'currentBatchFileName': batch_filename
-                    })
+            # Update progress every 5 files (to reduce I/O)
+            if progress_file and (processed % 5 == 1 or processed == total_files):
+                _write_progress(progress_file, {
+                    'operation': 'extract',
+                    'totalFiles': total_files,
+                    'processedFiles': processed,
+                    'currentFile': str(filename),
+                    'startTime': int(start_time * 1000),
+                    'lastUpdateTime': int(time.time() * 1000),
+                    'status': 'in_progress',
+                    'errorMessage': '',
+                    'totalBytes': total_bytes,
+                    'processedBytes': processed_bytes[0],
+                    'currentBatchIndex': batch_index,
+                    'totalBatchCount': batch_total,
+                    'currentBatchFileName': batch_filename
+                })
 
-            except Exception as e:
+        for run in runs:
+            try:
+                _extract_run(archive, run, output_dir, buffer, on_entry)
+            except ExtractionError as e:
                 # Error occurred - stop immediately and report
-                error_msg = str('Error extracting {}: {}'.format(filename, str(e)))
+                error_msg = str('Error extracting {}: {}'.format(e.filename, str(e)))
                 if progress_file:
                     _write_progress(progress_file, {
                         'operation': 'extract',
                         'totalFiles': total_files,
-                        'processedFiles': idx,
-                        'currentFile': str(filename),
+                        'processedFiles': len(extracted_files),
+                        'currentFile': str(e.filename),
                         'startTime': int(start_time * 1000),
                         'lastUpdateTime': int(time.time() * 1000),
                         'status': 'failed',
                         'errorMessage': error_msg,
+                        'totalBytes': total_bytes,
+                        'processedBytes': processed_bytes[0],
                         'currentBatchIndex': batch_index,
                         'totalBatchCount': batch_total,
                         'currentBatchFileName': batch_filename
@@ -160,6 +422,9 @@ def extract_rpa(rpa_file_path, output_dir, progress_file=None, batch_index=0, ba
                     files=list(extracted_files)
                 )
 
+        elapsed = time.time() - start_time
+        mb_per_second = (processed_bytes[0] / (1024.0 * 1024.0)) / elapsed if elapsed > 0 else 0.0
+
         # Mark extraction as completed
         if progress_file:
             _write_progress(progress_file, {
@@ -171,6 +436,8 @@ def extract_rpa(rpa_file_path, output_dir, progress_file=None, batch_index=0, ba
                 'lastUpdateTime': int(time.time() * 1000),
                 'status': 'completed',
                 'errorMessage': '',
+                'totalBytes': total_bytes,
+                'processedBytes': processed_bytes[0],
                 'currentBatchIndex': batch_index,
                 'totalBatchCount': batch_total,
                 'currentBatchFileName': batch_filename
@@ -178,8 +445,10 @@ def extract_rpa(rpa_file_path, output_dir, progress_file=None, batch_index=0, ba
 
         return dict(
             success=True,
-            message=str('Successfully extracted {} files'.format(len(extracted_files))),
-            files=list(extracted_files)
+            message=str('Successfully extracted {} files ({:.1f} MB/s)'.format(len(extracted_files), mb_per_second)),
+            files=list(extracted_files),
+            bytes=int(processed_bytes[0]),
+            mb_per_second=float(mb_per_second)
         )
 
     except Exception as e:
@@ -205,30 +474,225 @@ def extract_rpa(rpa_file_path, output_dir, progress_file=None, batch_index=0, ba
         )
 
 
-def create_rpa(source_dir, output_rpa_path, version=3, key=0xDEADBEEF, progress_file=None):
+def _precedence_key(rpa_file_path):
+    """
+    Sort key giving Ren'Py's archive load order, lowest precedence first
+
+    Ren'Py sorts full file names, extension included, so a copy named with a suffix
+    before the extension can sort before the original:
+
+    >>> sorted(['game/archive.rpa', 'game/archive-compressed.rpa'], key=_precedence_key)
+    ['game/archive-compressed.rpa', 'game/archive.rpa']
     """
-    Create an RPA archive from a directory
+    return os.path.basename(rpa_file_path), rpa_file_path
+
+
+def extract_rpa_batch(rpa_file_paths, output_dir, progress_file=None, filter_expr=None):
+    """
+    Extract several archives into one directory the way Ren'Py overlays them
+
+    Ren'Py searches archives in reverse alphabetical order of their names, so when
+    two archives contain the same path the one whose name sorts last wins. All
+    indexes are loaded first and each path is extracted once, from its winner.
 
     Args:
-        source_dir: Directory containing files to archive
+        rpa_file_paths: Paths to the .rpa files, extracted in this order
+        output_dir: Directory to extract files to
+        progress_file: Optional path to write progress JSON updates
+        filter_expr: Optional filter expression (see rpa_filter); only matching files are extracted
+
+    Returns:
+        dict with 'success' (bool), 'message' (str), 'files' (list),
+        'bytes' (int) and 'mb_per_second' (float)
+    """
+    start_time = time.time()
+    batch_total = len(rpa_file_paths)
+    state = {'index': 0, 'name': '', 'files': 0, 'bytes': 0}
+    total = {'files': 0, 'bytes': 0}
+
+    def progress(status, current_file, error_message=''):
+        if progress_file:
+            _write_progress(progress_file, {
+                'operation': 'extract',
+                'totalFiles': total['files'],
+                'processedFiles': state['files'],
+                'currentFile': str(current_file),
+                'startTime': int(start_time * 1000),
+                'lastUpdateTime': int(time.time() * 1000),
+                'status': status,
+                'errorMessage': error_message,
+                'totalBytes': total['bytes'],
+                'processedBytes': state['bytes'],
+                'currentBatchIndex': state['index'],
+                'totalBatchCount': batch_total,
+                'currentBatchFileName': state['name']
+            })
+
+    extracted_files = []
+    try:
+        progress('in_progress', 'Loading archives...')
+        archives = [open_archive(path) for path in rpa_file_paths]
+
+        # Resolve the winning archive of every path
+        winners = {}
+        overridden = 0
+        for position in sorted(range(batch_total), key=lambda i: _precedence_key(rpa_file_paths[i])):
+            archive = archives[position]
+            if filter_expr:
+                files = select_files(archive, filter_expr)[0]
+            else:
+                files = archive.list()
+            for filename in files:
+                if filename in winners:
+                    overridden += 1
+                winners[filename] = position
+
+        selected = [[] for _ in archives]
+        for filename, position in winners.items():
+            selected[position].append(filename)
+            total['bytes'] += archives[position].get_size(filename)
+        total['files'] = len(winners)
+
+        if not os.path.exists(output_dir):
+            os.makedirs(output_dir)
+        _prepare_directories(output_dir, winners)
+
+        buffer = bytearray(EXTRACT_BUFFER_SIZE)
+
+        def on_entry(filename, size):
+            extracted_files.append(str(filename))
+            state['files'] += 1
+            state['bytes'] += size
+            if state['files'] % 5 == 1 or state['files'] == total['files']:
+                progress('in_progress', filename)
+
+        for position, archive in enumerate(archives):
+            state['index'] = position + 1
+            state['name'] = os.path.basename(rpa_file_paths[position])
+            for run in _plan_extraction(archive, selected[position]):
+                try:
+                    _extract_run(archive, run, output_dir, buffer, on_entry)
+                except ExtractionError as e:
+                    error_msg = str('Error extracting {} from {}: {}'.format(e.filename, state['name'], str(e)))
+                    progress('failed', e.filename, error_msg)
+                    return dict(
+                        success=False,
+                        message=error_msg,
+                        files=list(extracted_files)
+                    )
+
+        elapsed = time.time() - start_time
+        mb_per_second = (state['bytes'] / (1024.0 * 1024.0)) / elapsed if elapsed > 0 else 0.0
+        progress('completed', 'Complete')
+
+        return dict(
+            success=True,
+            message=str('Extracted {} files from {} archives, {} overridden ({:.1f} MB/s)'.format(
+                len(extracted_files), batch_total, overridden, mb_per_second)),
+            files=list(extracted_files),
+            bytes=int(state['bytes']),
+            mb_per_second=float(mb_per_second)
+        )
+
+    except Exception as e:
+        error_msg = str('Error: {}'.format(str(e)))
+        progress('failed', '', error_msg)
+        return dict(
+            success=False,
+            message=error_msg,
+            files=list(extracted_files)
+        )
+
+
+def _collect_source_files(source_dir, skip_path=None, archive_prefix=''):
+    """
+    Recursively list the files of a directory as (archive_path, file_path) pairs
+
+    Args:
+        source_dir: Directory to walk
+        skip_path: Optional archive to leave out together with its numbered volumes
+            (e.g. the archive being written, see _is_output_file)
+        archive_prefix: Archive directory the files are placed under ('' = root)
+    """
+    skip = _is_output_file(skip_path) if skip_path else None
+    collected = []
+
+    def add_directory(dir_path, archive_prefix=''):
+        for item in os.listdir(dir_path):
+            item_path = os.path.join(dir_path, item)
+            archive_path = os.path.join(archive_prefix, item).replace(os.sep, '/')
+
+            if os.path.isdir(item_path):
+                # Recursively add subdirectory
+                add_directory(item_path, archive_path)
+            elif skip is None or not skip(item_path):
+                collected.append((archive_path, item_path))
+
+    add_directory(source_dir, archive_prefix)
+    return collected
+
+
+def _collect_sources(source, skip_path=None):
+    """
+    List the files to archive as (archive_path, file_path) pairs, read from where they are
+
+    Args:
+        source: A directory, whose contents are placed at the archive root, or a list of
+            (path, prefix) mappings: a directory's contents are placed under prefix and
+            a file is stored as prefix (its own name if prefix is empty)
+        skip_path: Optional archive to leave out together with its numbered volumes
+            (e.g. the archive being written, see _is_output_file)
+    """
+    if isinstance(source, str):
+        return _collect_source_files(source, skip_path)
+
+    skip = _is_output_file(skip_path) if skip_path else None
+    collected = []
+    for path, prefix in source:
+        path = str(path)
+        prefix = str(prefix).replace(os.sep, '/').strip('/')
+        if os.path.isdir(path):
+            collected.extend(_collect_source_files(path, skip_path, prefix))
+        elif os.path.isfile(path):
+            if skip is None or not skip(path):
+                collected.append((prefix or os.path.basename(path), path))
+        else:
+            raise IOError('Source not found: {}'.format(path))
+    return collected
+
+
+def create_rpa(source, output_rpa_path, version=3, key=0xDEADBEEF, progress_file=None, dedup=False, alignment=0,
+               volume_size=0):
+    """
+    Create an RPA archive from a directory or a list of sources
+
+    Files are streamed from their original locations; nothing is copied first.
+
+    Args:
+        source: Directory containing files to archive, or a list of (path, prefix)
+            mappings (see _collect_sources)
         output_rpa_path: Path for the output .rpa file
         version: RPA version (2 or 3, default 3)
         key: Obfuscation key for RPA v3 (default 0xDEADBEEF)
         progress_file: Optional path to write progress JSON updates
+        dedup: Store files with identical contents only once
+        alignment: Start each file's data on a multiple of this many bytes (e.g. 4096, 16384; 0 = packed)
+        volume_size: If the files exceed this many bytes, write numbered volumes of at most
+            this size instead of one archive (see _create_volumes); 0 = never split
 
     Returns:
-        dict with 'success' (bool), 'message' (str), and 'files' (list)
+        dict with 'success' (bool), 'message' (str), 'files' (list),
+        'dedup_saved' (int, bytes saved by deduplication) and 'volumes' (list of written archives)
     """
     start_time = time.time()
 
     try:
-        # First, count total files to process
-        total_files = 0
-        for root, dirs, files in os.walk(source_dir):
-            total_files += len(files)
+        # First, list the files to process
+        sources = _collect_sources(source, skip_path=output_rpa_path)
+        total_files = len(sources)
 
         if total_files == 0:
-            error_msg = str('No files found in source directory')
+            error_msg = str('No files found in sources')
             if progress_file:
                 _write_progress(progress_file, {
                     'operation': 'create',
@@ -246,6 +710,10 @@ def create_rpa(source_dir, output_rpa_path, version=3, key=0xDEADBEEF, progress_
                 files=list()
             )
 
+        if volume_size > 0 and sum(os.path.getsize(path) for _, path in sources) > volume_size:
+            return _create_volumes(sources, output_rpa_path, volume_size, version, key, progress_file,
+                                   dedup, alignment, start_time)
+
         # Initialize progress
         if progress_file:
             _write_progress(progress_file, {
@@ -260,63 +728,43 @@ def create_rpa(source_dir, output_rpa_path, version=3, key=0xDEADBEEF, progress_
             })
 
         # Create new archive
-        archive = RenPyArchive(version=version, key=key, verbose=False)
+        archive = RenPyArchive(version=version, key=key, verbose=False, alignment=alignment)
 
-        # Recursively add all files from source directory
+        # Recursively record all files from source directory; contents are streamed in on save
         added_files = []
         file_index = [0]  # Using list to allow modification in nested function
+        total_bytes = [0]
+        processed_bytes = [0]
 
-        def add_directory(dir_path, archive_prefix=''):
-            for item in os.listdir(dir_path):
-                item_path = os.path.join(dir_path, item)
-                archive_path = os.path.join(archive_prefix, item).replace(os.sep, '/')
 
-                if os.path.isdir(item_path):
-                    # Recursively add subdirectory
-                    add_directory(item_path, archive_path)
-                else:
-                    # Add file
-                    try:
-                        with open(item_path, 'rb') as f:
-                            contents = f.read()
-                        archive.add(archive_path, contents)
-                        added_files.append(str(archive_path))
-
-                        # Update progress every 5 files (to reduce I/O)
-                        file_index[0] += 1
-                        if progress_file and (file_index[0] % 5 == 0 or file_index[0] == total_files):
-                            _write_progress(progress_file, {
-                                'operation': 'create',
-                                'totalFiles': total_files,
-                                'processedFiles': file_index[0],
-                                'currentFile': str(archive_path),
-                                'startTime': int(start_time * 1000),
-                                'lastUpdateTime': int(time.time() * 1000),
-                                'status': 'in_progress',
-                                'errorMessage': ''
-                            })
-
-                    except Exception as e:
-                        # Error occurred - stop immediately and report
-                        error_msg = str('Error adding {}: {}'.format(item_path, str(e)))
-                        if progress_file:
-                            _write_progress(progress_file, {
-                                'operation': 'create',
-                                'totalFiles': total_files,
-                                'processedFiles': file_index[0],
-                                'currentFile': str(archive_path),
-                                'startTime': int(start_time * 1000),
-                                'lastUpdateTime': int(time.time() * 1000),
-                                'status': 'failed',
-                                'errorMessage': error_msg
-                            })
-                        raise Exception(error_msg)
+        def on_file_written(archive_path, length):
+            # Update progress every 5 files (to reduce I/O)
+            file_index[0] += 1
+            processed_bytes[0] += length
+            if progress_file and (file_index[0] % 5 == 0 or file_index[0] == total_files):
+                _write_progress(progress_file, {
+                    'operation': 'create',
+                    'totalFiles': total_files,
+                    'processedFiles': file_index[0],
+                    'currentFile': str(archive_path),
+                    'startTime': int(start_time * 1000),
+                    'lastUpdateTime': int(time.time() * 1000),
+                    'status': 'in_progress',
+                    'errorMessage': '',
+                    'totalBytes': total_bytes[0],
+                    'processedBytes': processed_bytes[0]
+                })
 
         # Add all files
-        add_directory(source_dir)
+        for archive_path, item_path in sources:
+            archive.add_file(archive_path, item_path)
+            added_files.append(str(archive_path))
+            total_bytes[0] += os.path.getsize(item_path)
 
-        # Save archive
-        archive.save(output_rpa_path)
+        # Stream files into the archive
+        saved = archive.save(output_rpa_path, progress=on_file_written, dedup=dedup)
+        _discard_manifest(output_rpa_path)
+        _replace_recorded_outputs(output_rpa_path, [output_rpa_path])
 
         # Mark creation as completed
         if progress_file:
@@ -331,10 +779,16 @@ def create_rpa(source_dir, output_rpa_path, version=3, key=0xDEADBEEF, progress_
                 'errorMessage': ''
             })
 
+        message = 'Successfully created archive with {} files'.format(len(added_files))
+        if saved:
+            message += ' ({:.1f} MB saved by deduplication)'.format(saved / (1024.0 * 1024.0))
+
         return dict(
             success=True,
-            message=str('Successfully created archive with {} files'.format(len(added_files))),
-            files=list(added_files)
+            message=str(message),
+            files=list(added_files),
+            dedup_saved=int(saved),
+            volumes=[str(output_rpa_path)]
         )
 
     except Exception as e:
@@ -357,6 +811,569 @@ def create_rpa(source_dir, output_rpa_path, version=3, key=0xDEADBEEF, progress_
         )
 
 
+def _volume_paths(output_rpa_path, count):
+    """Volume file names for an output archive: game/archive.rpa -> game/archive0.rpa, game/archive1.rpa, ..."""
+    base, ext = os.path.splitext(output_rpa_path)
+    return ['{}{}{}'.format(base, index, ext or '.rpa') for index in range(count)]
+
+
+def _is_output_file(output_rpa_path):
+    """
+    Predicate for files that are the output archive or one of its numbered volumes,
+    which must never be packed into the archive itself
+    """
+    output = os.path.realpath(output_rpa_path)
+    directory = os.path.dirname(output)
+    base, ext = os.path.splitext(os.path.basename(output))
+    pattern = re.compile(re.escape(base) + r'\d+' + re.escape(ext or '.rpa') + r'\Z')
+
+    def matches(path):
+        path = os.path.realpath(path)
+        if path == output:
+            return True
+        return os.path.dirname(path) == directory and pattern.match(os.path.basename(path)) is not None
+
+    return matches
+
+
+def _replace_recorded_outputs(output_rpa_path, written):
+    """
+    Remove the archives an earlier create_rpa run wrote for this output that this run did not
+    write again, e.g. the volumes of an earlier split, which Ren'Py would still load. Then
+    record the archives just written.
+
+    Only files in the record whose size and mtime are unchanged are removed, so archives this
+    tool did not write, or that changed since, are never touched. Without set_cache_dir()
+    nothing is recorded or removed. Only call this once the new output was written.
+    """
+    if _volume_record_dir is None:
+        return
+    output = os.path.realpath(output_rpa_path)
+    record_path = os.path.join(
+        _volume_record_dir, hashlib.sha1(output.encode('utf-8')).hexdigest() + '.json')
+    written = [os.path.realpath(path) for path in written]
+
+    try:
+        with open(record_path) as f:
+            recorded = json.load(f)
+    except (OSError, ValueError):
+        recorded = {}
+
+    for path, (size, mtime) in recorded.items():
+        if path in written:
+            continue
+        try:
+            stat = os.stat(path)
+            if stat.st_size == size and stat.st_mtime_ns == mtime:
+                os.remove(path)
+                _discard_manifest(path)
+        except OSError:
+            pass
+
+    try:
+        os.makedirs(_volume_record_dir, exist_ok=True)
+        record = {}
+        for path in written:
+            stat = os.stat(path)
+            record[path] = [stat.st_size, stat.st_mtime_ns]
+        with open(record_path, 'w') as f:
+            json.dump(record, f)
+    except OSError:
+        pass
+
+
+def _plan_volumes(sources, volume_size):
+    """
+    Distribute (archive_path, file_path, size) items over volumes of at most volume_size bytes
+
+    Largest files are placed first, each into the least filled volume that still has
+    room (longest-processing-time first), so volumes end up about the same size and
+    parallel writers finish together. A file larger than volume_size gets a volume of its own.
+
+    Returns:
+        list of volumes, largest first, each [total_size, [(archive_path, file_path, size), ...]]
+    """
+    total_size = sum(item[2] for item in sources)
+    count = max(1, -(-total_size // volume_size))
+    volumes = [[0, []] for _ in range(count)]
+    heap = [(0, index) for index in range(count)]
+
+    for item in sorted(sources, key=lambda item: item[2], reverse=True):
+        filled, index = heapq.heappop(heap)
+        if filled > 0 and filled + item[2] > volume_size:
+            # Not even the emptiest volume has room left
+            heapq.heappush(heap, (filled, index))
+            index = len(volumes)
+            volumes.append([0, []])
+        volumes[index][0] += item[2]
+        volumes[index][1].append(item)
+        heapq.heappush(heap, (volumes[index][0], index))
+
+    volumes = [volume for volume in volumes if volume[1]]
+    volumes.sort(key=lambda volume: volume[0], reverse=True)
+    return volumes
+
+
+def _create_volumes(sources, output_rpa_path, volume_size, version, key, progress_file, dedup, alignment, start_time):
+    """
+    Create numbered volumes (archive0.rpa, archive1.rpa, ...) instead of one archive
+
+    Every volume is a standalone archive holding a disjoint set of files, so Ren'Py
+    loads them together like any other set of archives. Volumes are written by up
+    to MAX_VOLUME_WRITERS threads taking the next volume from a shared list ordered
+    largest first; file I/O releases the GIL, so the writers run concurrently.
+    Progress reports overall bytes and the bytes written per volume.
+    """
+    items = [(archive_path, path, os.path.getsize(path)) for archive_path, path in sources]
+    volumes = _plan_volumes(items, volume_size)
+    paths = _volume_paths(output_rpa_path, len(volumes))
+    total_files = len(items)
+    total_bytes = sum(volume[0] for volume in volumes)
+
+    lock = threading.Lock()
+    next_volume = [0]
+    written = [0] * len(volumes)
+    state = {'files': 0, 'bytes': 0, 'done': 0, 'saved': 0, 'error': None}
+
+    def progress(status, current_file, error_message=''):
+        _write_progress(progress_file, {
+            'operation': 'create',
+            'totalFiles': total_files,
+            'processedFiles': state['files'],
+            'currentFile': str(current_file),
+            'startTime': int(start_time * 1000),
+            'lastUpdateTime': int(time.time() * 1000),
+            'status': status,
+            'errorMessage': error_message,
+            'totalBytes': total_bytes,
+            'processedBytes': state['bytes'],
+            'currentBatchIndex': state['done'],
+            'totalBatchCount': len(volumes),
+            'currentBatchFileName': ', '.join('{} {:.0f}/{:.0f} MB'.format(
+                os.path.basename(paths[index]), written[index] / 1048576.0, volumes[index][0] / 1048576.0)
+                for index in range(len(volumes)) if 0 < written[index] < volumes[index][0])
+        })
+
+    def writer():
+        while True:
+            with lock:
+                index = next_volume[0]
+                if index >= len(volumes) or state['error'] is not None:
+                    return
+                next_volume[0] += 1
+
+            def on_file_written(archive_path, length):
+                with lock:
+                    written[index] += length
+                    state['files'] += 1
+                    state['bytes'] += length
+                    if state['files'] % 5 == 1:
+                        progress('in_progress', archive_path)
+
+            try:
+                archive = RenPyArchive(version=version, key=key, verbose=False, alignment=alignment)
+                for archive_path, path, _ in volumes[index][1]:
+                    archive.add_file(archive_path, path)
+                saved = archive.save(paths[index], progress=on_file_written, dedup=dedup)
+                archive.handle.close()
+            except Exception as e:
+                with lock:
+                    if state['error'] is None:
+                        state['error'] = '{}: {}'.format(os.path.basename(paths[index]), e)
+                return
+
+            with lock:
+                state['done'] += 1
+                state['saved'] += saved
+                progress('in_progress', 'Finished ' + os.path.basename(paths[index]))
+
+    progress('in_progress', 'Writing {} volumes...'.format(len(volumes)))
+    threads = [threading.Thread(target=writer) for _ in range(min(len(volumes), MAX_VOLUME_WRITERS))]
+    for thread in threads:
+        thread.start()
+    for thread in threads:
+        thread.join()
+
+    if state['error'] is not None:
+        # Don't leave a partial set of volumes behind for Ren'Py to load
+        for path in paths:
+            if os.path.exists(path):
+                os.remove(path)
+        error_msg = str('Error: {}'.format(state['error']))
+        progress('failed', '', error_msg)
+        return dict(
+            success=False,
+            message=error_msg,
+            files=list()
+        )
+
+    for path in paths:
+        _discard_manifest(path)
+    _replace_recorded_outputs(output_rpa_path, paths)
+
+    progress('completed', 'Complete')
+    message = 'Successfully created {} volumes with {} files'.format(len(volumes), total_files)
+    if state['saved']:
+        message += ' ({:.1f} MB saved by deduplication)'.format(state['saved'] / (1024.0 * 1024.0))
+
+    return dict(
+        success=True,
+        message=str(message),
+        files=list([str(item[0]) for item in items]),
+        dedup_saved=int(state['saved']),
+        volumes=list([str(path) for path in paths])
+    )
+
+
+def append_rpa(source, rpa_file_path, progress_file=None, alignment=0):
+    """
+    Add or replace files in an existing RPA archive in place
+
+    Only the files from source are written: their data and a new index are
+    appended to the archive and the header is patched to point at the new index.
+    Existing entries are not rewritten.
+
+    Args:
+        source: Directory containing files to add (paths relative to it are used in the archive),
+            or a list of (path, prefix) mappings (see _collect_sources)
+        rpa_file_path: Path of the existing .rpa file to update
+        progress_file: Optional path to write progress JSON updates
+        alignment: Start each added file's data on a multiple of this many bytes (0 = packed)
+
+    Returns:
+        dict with 'success' (bool), 'message' (str), 'files' (list) and 'replaced' (int)
+    """
+    start_time = time.time()
+    file_index = [0]
+
+    try:
+        archive = open_archive(rpa_file_path)
+        archive.alignment = alignment
+        sources = _collect_sources(source, skip_path=rpa_file_path)
+        total_files = len(sources)
+
+        if total_files == 0:
+            raise Exception('No files found in sources')
+
+        # Register files, noting which ones replace existing entries
+        replaced = 0
+        total_bytes = 0
+        for archive_path, item_path in sources:
+            if archive.has_file(archive_path):
+                replaced += 1
+            archive.add_file(archive_path, item_path)
+            total_bytes += os.path.getsize(item_path)
+
+        processed_bytes = [0]
+
+        def on_file_written(archive_path, length):
+            # Update progress every 5 files (to reduce I/O)
+            file_index[0] += 1
+            processed_bytes[0] += length
+            if progress_file and (file_index[0] % 5 == 1 or file_index[0] == total_files):
+                _write_progress(progress_file, {
+                    'operation': 'create',
+                    'totalFiles': total_files,
+                    'processedFiles': file_index[0],
+                    'currentFile': str(archive_path),
+                    'startTime': int(start_time * 1000),
+                    'lastUpdateTime': int(time.time() * 1000),
+                    'status': 'in_progress',
+                    'errorMessage': '',
+                    'totalBytes': total_bytes,
+                    'processedBytes': processed_bytes[0]
+                })
+
+        archive.append(progress=on_file_written)
+        _update_manifest(rpa_file_path, {archive.convert_filename(path): item_path for path, item_path in sources})
+
+        if progress_file:
+            _write_progress(progress_file, {
+                'operation': 'create',
+                'totalFiles': total_files,
+                'processedFiles': total_files,
+                'currentFile': 'Complete',
+                'startTime': int(start_time * 1000),
+                'lastUpdateTime': int(time.time() * 1000),
+                'status': 'completed',
+                'errorMessage': ''
+            })
+
+        return dict(
+            success=True,
+            message=str('Updated archive: {} files added, {} replaced'.format(total_files - replaced, replaced)),
+            files=list([str(path) for path, _ in sources]),
+            replaced=int(replaced)
+        )
+
+    except Exception as e:
+        error_msg = str('Error: {}'.format(str(e)))
+        if progress_file:
+            _write_progress(progress_file, {
+                'operation': 'create',
+                'totalFiles': 0,
+                'processedFiles': file_index[0],
+                'currentFile': '',
+                'startTime': int(start_time * 1000),
+                'lastUpdateTime': int(time.time() * 1000),
+                'status': 'failed',
+                'errorMessage': error_msg
+            })
+        return dict(
+            success=False,
+            message=error_msg,
+            files=list(),
+            replaced=0
+        )
+
+
+def manifest_path(rpa_file_path):
+    """Manifest kept next to an archive (sha1sum format, see verify_rpa)"""
+    return rpa_file_path + '.sha1'
+
+
+def _discard_manifest(rpa_file_path):
+    """Remove the manifest of an archive that was rewritten, as its hashes no longer apply"""
+    try:
+        os.remove(manifest_path(rpa_file_path))
+    except OSError:
+        pass
+
+
+def _update_manifest(rpa_file_path, sources):
+    """
+    Rewrite the manifest lines of entries added or replaced in place, hashing their source files
+
+    Args:
+        sources: dict of archive path -> file the entry was written from
+    """
+    manifest = manifest_path(rpa_file_path)
+    if not os.path.isfile(manifest):
+        return
+    try:
+        hashes = _read_manifest(manifest)
+        for name, path in sources.items():
+            digest = hashlib.sha1()
+            with open(path, 'rb') as f:
+                for chunk in iter(lambda: f.read(EXTRACT_BUFFER_SIZE), b''):
+                    digest.update(chunk)
+            hashes[name] = digest.hexdigest()
+        _write_manifest(manifest, hashes)
+    except (OSError, ValueError):
+        _discard_manifest(rpa_file_path)
+
+
+def _read_manifest(path):
+    hashes = {}
+    with open(path, 'r', encoding='utf-8') as f:
+        for line in f:
+            line = line.rstrip('\n')
+            if len(line) > 42 and line[40:42] == '  ':
+                hashes[line[42:]] = line[:40].lower()
+    return hashes
+
+
+def _write_manifest(path, hashes):
+    temp_path = path + '.tmp'
+    with open(temp_path, 'w', encoding='utf-8', newline='\n') as f:
+        for name in sorted(hashes):
+            f.write('{}  {}\n'.format(hashes[name], name))
+    os.replace(temp_path, path)
+
+
+def _hash_entry(fd, offset, data_length, prefix):
+    """SHA-1 of an entry's extracted contents, read with positional reads"""
+    digest = hashlib.sha1(prefix)
+    position = offset
+    remaining = data_length
+    while remaining > 0:
+        chunk = os.pread(fd, min(remaining, EXTRACT_BUFFER_SIZE), position)
+        if not chunk:
+            raise IOError('unexpected end of archive, {} bytes missing'.format(remaining))
+        digest.update(chunk)
+        position += len(chunk)
+        remaining -= len(chunk)
+    return digest.hexdigest()
+
+
+def verify_rpa(rpa_file_path, progress_file=None, save_manifest=False, batch_index=0, batch_total=0, threads=0):
+    """
+    Check an archive for truncation and corruption without writing any output
+
+    Mirrors com.renpytool.rpa.RpaVerifier: every entry is bounds-checked against the
+    file and the index, overlapping entries are reported (identical regions shared by
+    deduplicated files are fine) and every entry is hashed by parallel readers. When
+    a manifest (<archive>.sha1) exists, entries are compared against it.
+    Only the last archive of a batch (batch_index == batch_total) reports a final status.
+
+    Args:
+        rpa_file_path: Path to the .rpa file
+        progress_file: Optional path to write progress JSON updates
+        save_manifest: Write the entry hashes to the manifest if no problems were found
+        batch_index: Current archive index in batch (0 = no batch)
+        batch_total: Total archives in batch (0 = no batch)
+        threads: Number of readers (0 = one per CPU, up to MAX_VERIFY_WORKERS)
+
+    Returns:
+        dict with 'success' (bool, no problems found), 'message' (str), 'problems' (list)
+        and 'hashes' (dict of name to SHA-1)
+    """
+    start_time = time.time()
+    batch_filename = os.path.basename(rpa_file_path)
+    state = {'files': 0, 'bytes': 0, 'total_files': 0, 'total_bytes': 0, 'current': ''}
+    lock = threading.Lock()
+
+    def progress(status, current_file, error_message=''):
+        _write_progress(progress_file, {
+            'operation': 'verify',
+            'totalFiles': state['total_files'],
+            'processedFiles': state['files'],
+            'currentFile': str(current_file),
+            'startTime': int(start_time * 1000),
+            'lastUpdateTime': int(time.time() * 1000),
+            'status': status,
+            'errorMessage': error_message,
+            'totalBytes': state['total_bytes'],
+            'processedBytes': state['bytes'],
+            'currentBatchIndex': batch_index,
+            'totalBatchCount': batch_total,
+            'currentBatchFileName': batch_filename
+        })
+
+    try:
+        progress('in_progress', 'Checking index...')
+        # Parse the index itself, never a cached copy of it
+        archive = RenPyArchive(rpa_file_path, verbose=False)
+        file_size = os.path.getsize(rpa_file_path)
+        archive.handle.seek(0)
+        index_offset = int(archive.handle.readline().split()[1], 16)
+
+        problems = []
+        manifest = manifest_path(rpa_file_path)
+        expected = None
+        if os.path.isfile(manifest):
+            try:
+                expected = _read_manifest(manifest)
+            except (IOError, OSError, UnicodeDecodeError) as e:
+                problems.append('{}: unreadable ({})'.format(os.path.basename(manifest), e))
+
+        # Structural checks on the index alone
+        entries = []
+        for name in archive.indexes.keys():
+            offset, length, prefix = archive.get_entry(name)
+            if not isinstance(prefix, bytes):
+                prefix = prefix.encode('latin1')
+            entries.append((offset, length - len(prefix), prefix, name))
+        entries.sort()
+
+        readable = []
+        previous = None
+        for entry in entries:
+            offset, data_length, prefix, name = entry
+            end = offset + data_length
+            if offset < 0 or data_length < 0 or end > file_size:
+                problems.append('{}: points outside the archive (truncated?)'.format(name))
+                continue
+            if end > index_offset:
+                problems.append('{}: overlaps the archive index'.format(name))
+            if previous is not None:
+                shares_region = previous[0] == offset and previous[1] == data_length
+                if not shares_region and offset < previous[0] + previous[1]:
+                    problems.append('{}: overlaps {}'.format(name, previous[3]))
+            if previous is None or end > previous[0] + previous[1]:
+                previous = entry
+            readable.append(entry)
+
+        state['total_files'] = len(readable)
+        state['total_bytes'] = sum(entry[1] for entry in readable)
+        hashes = {}
+        last_update = [0.0]
+
+        def hash_one(entry):
+            offset, data_length, prefix, name = entry
+            try:
+                digest = _hash_entry(fd, offset, data_length, prefix)
+            except (IOError, OSError) as e:
+                digest = None
+                error = '{}: {}'.format(name, e)
+            with lock:
+                if digest is None:
+                    problems.append(error)
+                else:
+                    hashes[name] = digest
+                state['files'] += 1
+                state['bytes'] += data_length
+                now = time.time()
+                if now - last_update[0] >= 0.5:
+                    last_update[0] = now
+                    progress('in_progress', name)
+
+        workers = threads if threads > 0 else min(os.cpu_count() or 1, MAX_VERIFY_WORKERS)
+        fd = os.open(rpa_file_path, os.O_RDONLY)
+        try:
+            with ThreadPoolExecutor(max_workers=workers) as executor:
+                list(executor.map(hash_one, readable))
+        finally:
+            os.close(fd)
+
+        # Compare against the saved manifest
+        manifest_name = os.path.basename(manifest)
+        added = 0
+        if expected is not None:
+            for name, digest in expected.items():
+                actual = hashes.get(name)
+                if actual is not None and actual != digest:
+                    problems.append('{}: contents differ from {}'.format(name, manifest_name))
+                elif actual is None and name not in archive.indexes:
+                    problems.append('{}: missing (listed in {})'.format(name, manifest_name))
+            added = sum(1 for name in hashes if name not in expected)
+
+        elapsed = time.time() - start_time
+        mb_per_second = (state['bytes'] / (1024.0 * 1024.0)) / elapsed if elapsed > 0 else 0.0
+        problems.sort()
+
+        if problems:
+            message = '{}: {} problems found'.format(batch_filename, len(problems))
+        else:
+            message = 'Verified {} files, no problems found ({:.1f} MB/s)'.format(len(hashes), mb_per_second)
+        if expected is not None:
+            message += ', checked against {}'.format(manifest_name)
+            if added:
+                message += ' ({} new files)'.format(added)
+        if save_manifest:
+            if problems:
+                message += ', manifest not saved'
+            else:
+                try:
+                    _write_manifest(manifest, hashes)
+                    message += ', saved {}'.format(manifest_name)
+                except (IOError, OSError):
+                    message += ', could not save {}'.format(manifest_name)
+
+        if batch_index == batch_total:
+            if problems:
+                progress('failed', '', '\n'.join([message] + problems[:20]))
+            else:
+                progress('completed', 'Complete')
+
+        return dict(
+            success=not problems,
+            message=str(message),
+            problems=list(problems),
+            hashes=dict(hashes)
+        )
+
+    except Exception as e:
+        error_msg = str('Error: {}'.format(str(e)))
+        progress('failed', '', error_msg)
+        return dict(
+            success=False,
+            message=error_msg,
+            problems=[error_msg],
+            hashes=dict()
+        )
+
+
 def list_rpa_files(rpa_file_path):
     """
     List all files in an RPA archive
@@ -368,7 +1385,7 @@ def list_rpa_files(rpa_file_path):
         dict with 'success' (bool), 'message' (str), 'files' (list), and 'version' (str)
     """
     try:
-        archive = RenPyArchive(rpa_file_path, verbose=False)
+        archive = open_archive(rpa_file_path)
         files = archive.list()
         files.sort()
 
@@ -8,6 +8,8 @@ import codecs
 import pickle
 import errno
 import random
+import io
+import hashlib
 try:
     import pickle5 as pickle
 except:
@@ -54,15 +56,68 @@ elif sys.version_info[0] == 2:
     def _unpickle(data):
         return pickle.loads(data)
 
+# Read-only stream over a single archive entry, serving the prefix bytes first and then the
+# entry data from the archive handle. Position is tracked per stream, so several streams can
+# share one handle as long as they are not read concurrently.
+class RenPyArchiveEntry(io.RawIOBase):
+    def __init__(self, handle, offset, length, prefix):
+        self.handle = handle
+        self.prefix = prefix
+        self.length = length
+        self.position = offset
+        self.remaining = length - len(prefix)
+        self.prefix_pos = 0
+
+    def readable(self):
+        return True
+
+    def readinto(self, buffer):
+        view = memoryview(buffer)
+        size = len(view)
+        if size == 0:
+            return 0
+
+        # Serve the prefix bytes before touching the archive.
+        if self.prefix_pos < len(self.prefix):
+            count = min(size, len(self.prefix) - self.prefix_pos)
+            view[:count] = self.prefix[self.prefix_pos:self.prefix_pos + count]
+            self.prefix_pos += count
+            return count
+
+        if self.remaining <= 0:
+            return 0
+
+        count = min(size, self.remaining)
+        self.handle.seek(self.position)
+        count = self.handle.readinto(view[:count])
+        if not count:
+            raise IOError(errno.EIO, 'unexpected end of archive while reading entry data')
+        self.position += count
+        self.remaining -= count
+        return count
+
+
+# Write-through wrapper that hashes everything written to the underlying file.
+class HashingWriter(object):
+    def __init__(self, output):
+        self.output = output
+        self.hash = hashlib.sha1()
+
+    def write(self, data):
+        self.hash.update(data)
+        return self.output.write(data)
+
 class RenPyArchive:
     file = None
     handle = None
 
     files = {}
+    sources = {}
     indexes = {}
 
     version = None
     padlength = 0
+    alignment = 0
     key = None
     verbose = False
 
@@ -70,13 +125,25 @@ class RenPyArchive:
     RPA3_MAGIC = 'RPA-3.0 '
     RPA3_2_MAGIC = 'RPA-3.2 '
 
+    # Default buffer size used when streaming entries in and out of archives.
+    CHUNK_SIZE = 1024 * 1024
+
     # For backward compatibility, otherwise Python3-packed archives won't be read by Python2
     PICKLE_PROTOCOL = 2
 
-    def __init__(self, file = None, version = 3, padlength = 0, key = 0xDEADBEEF, verbose = False):
+    # index_cache, if given, provides lookup(filename) -> (key, indexes) and store(filename, key, indexes)
+    # so archives that did not change since they were last opened skip reading their index.
+    # alignment, if set (e.g. 4096 or 16384), makes the data of every written entry start on a multiple of it,
+    # so entries can be mapped without straddling more pages than needed.
+    def __init__(self, file = None, version = 3, padlength = 0, key = 0xDEADBEEF, verbose = False, index_cache = None, alignment = 0):
         self.padlength = padlength
+        self.alignment = alignment
         self.key = key
         self.verbose = verbose
+        self.index_cache = index_cache
+        self.files = {}
+        self.sources = {}
+        self.indexes = {}
 
         if file is not None:
             self.load(file)
@@ -152,6 +219,15 @@ class RenPyArchive:
 
         return bytes(padding, 'utf-8')
 
+    # Write zero bytes up to the next alignment boundary, returning the new offset.
+    def write_alignment(self, archive, offset):
+        if self.alignment <= 1:
+            return offset
+        count = -offset % self.alignment
+        if count > 0:
+            archive.write(b'\0' * count)
+        return offset + count
+
     # Converts a filename to archive format.
     def convert_filename(self, filename):
         (drive, filename) = os.path.splitdrive(os.path.normpath(filename).replace(os.sep, '/'))
@@ -165,7 +241,7 @@ class RenPyArchive:
 
     # List files in archive and current internal storage.
     def list(self):
-        return list(self.indexes.keys()) + list(self.files.keys())
+        return list(self.indexes.keys()) + list(self.files.keys()) + list(self.sources.keys())
 
     # Calculate total size of all files that would be extracted
     def get_total_size(self):
@@ -183,17 +259,27 @@ class RenPyArchive:
         for filename in self.files.keys():
             total_size += len(self.files[filename])
 
+        # Size from files on disk that will be streamed in on save
+        for filename in self.sources.keys():
+            total_size += os.path.getsize(self.sources[filename])
+
         return total_size
 
     # Check if a file exists in the archive.
     def has_file(self, filename):
         filename = _unicode(filename)
-        return filename in self.indexes.keys() or filename in self.files.keys()
+        return filename in self.indexes.keys() or filename in self.files.keys() or filename in self.sources.keys()
 
     # Read file from archive or internal storage.
     def read(self, filename):
         filename = self.convert_filename(_unicode(filename))
 
+        # Files added from disk are read straight from their source.
+        if filename in self.sources:
+            self.verbose_print('Reading file {0} from {1}...'.format(_printable(filename), self.sources[filename]))
+            with open(self.sources[filename], 'rb') as source:
+                return source.read()
+
         # Check if the file exists in our indexes.
         if filename not in self.files and filename not in self.indexes:
             raise IOError(errno.ENOENT, 'the requested file {0} does not exist in the given Ren\'Py archive'.format(
@@ -222,6 +308,60 @@ class RenPyArchive:
             self.handle.seek(offset)
             return _unmangle(prefix) + self.handle.read(length - len(prefix))
 
+    # Get offset, length and prefix of a file in our opened archive.
+    def get_entry(self, filename):
+        if len(self.indexes[filename][0]) == 3:
+            (offset, length, prefix) = self.indexes[filename][0]
+        else:
+            (offset, length) = self.indexes[filename][0]
+            prefix = ''
+        return (offset, length, _unmangle(prefix))
+
+    # Open a file from archive or internal storage as a readable stream, without loading it into memory.
+    def open_entry(self, filename):
+        filename = self.convert_filename(_unicode(filename))
+
+        if filename in self.files:
+            return io.BytesIO(self.files[filename])
+        if filename in self.sources:
+            return open(self.sources[filename], 'rb', buffering=0)
+        if filename not in self.indexes or self.handle is None:
+            raise IOError(errno.ENOENT, 'the requested file {0} does not exist in the given Ren\'Py archive'.format(
+                _printable(filename)))
+
+        (offset, length, prefix) = self.get_entry(filename)
+        self.verbose_print('Streaming file {0} from data file {1}... (offset = {2}, length = {3} bytes)'.format(
+            _printable(filename), self.file, offset, length))
+        return RenPyArchiveEntry(self.handle, offset, length, prefix)
+
+    # Iterate over the contents of a file in chunks of at most chunk_size bytes.
+    # The yielded memoryview is only valid until the next iteration.
+    def iter_chunks(self, filename, chunk_size = None):
+        buffer = bytearray(chunk_size or self.CHUNK_SIZE)
+        view = memoryview(buffer)
+        stream = self.open_entry(filename)
+        while True:
+            count = stream.readinto(buffer)
+            if not count:
+                break
+            yield view[:count]
+
+    # Copy a file from the archive into a writable file object using a fixed-size buffer.
+    # Returns the number of bytes written.
+    def extract_to(self, filename, output, buffer = None):
+        if buffer is None:
+            buffer = bytearray(self.CHUNK_SIZE)
+        view = memoryview(buffer)
+        written = 0
+        with self.open_entry(filename) as stream:
+            while True:
+                count = stream.readinto(buffer)
+                if not count:
+                    break
+                output.write(view[:count])
+                written += count
+        return written
+
     # Modify a file in archive or internal storage.
     def change(self, filename, contents):
         filename = _unicode(filename)
@@ -239,14 +379,28 @@ class RenPyArchive:
 
         self.verbose_print('Adding file {0} to archive... (length = {1} bytes)'.format(
             _printable(filename), len(contents)))
+        self.sources.pop(filename, None)
+        self.indexes.pop(filename, None)
         self.files[filename] = contents
 
+    # Add a file from disk without reading it; its contents are streamed into the archive on save.
+    def add_file(self, filename, path):
+        filename = self.convert_filename(_unicode(filename))
+
+        self.verbose_print('Adding file {0} to archive from {1}...'.format(_printable(filename), path))
+        self.files.pop(filename, None)
+        self.indexes.pop(filename, None)
+        self.sources[filename] = path
+
     # Remove a file from archive or internal storage.
     def remove(self, filename):
         filename = _unicode(filename)
         if filename in self.files:
             self.verbose_print('Removing file {0} from internal storage...'.format(_printable(filename)))
             del self.files[filename]
+        elif filename in self.sources:
+            self.verbose_print('Removing file {0} from pending files...'.format(_printable(filename)))
+            del self.sources[filename]
         elif filename in self.indexes:
             self.verbose_print('Removing file {0} from archive indexes...'.format(_printable(filename)))
             del self.indexes[filename]
@@ -261,12 +415,37 @@ class RenPyArchive:
             self.handle.close()
         self.file = filename
         self.files = {}
+        self.sources = {}
         self.handle = open(self.file, 'rb')
         self.version = self.get_version()
-        self.indexes = self.extract_indexes()
+
+        cached = None
+        if self.index_cache is not None and self.version in [2, 3, 3.2]:
+            cached = self.index_cache.lookup(self.file)
+        if cached is not None:
+            self.verbose_print('Using cached index for {0}...'.format(self.file))
+            (key, self.indexes) = cached
+            if self.version != 2:
+                self.key = key
+        else:
+            self.indexes = self.extract_indexes()
+            if self.index_cache is not None and self.version in [2, 3, 3.2]:
+                self.index_cache.store(self.file, self.key, self.indexes)
+
+    # Get the size of a file in archive or internal storage without reading it.
+    def get_size(self, filename):
+        if filename in self.files:
+            return len(self.files[filename])
+        if filename in self.sources:
+            return os.path.getsize(self.sources[filename])
+        return self.get_entry(filename)[1]
 
     # Save current state into a new file, merging archive and internal storage, rebuilding indexes, and optionally saving in another format version.
-    def save(self, filename = None):
+    # File contents are streamed into the new file in chunks, so memory use depends on the number of files, not their size.
+    # If given, progress(filename, length) is called after each file is written.
+    # With dedup, files with identical contents share one data region; files whose size is unique are never hashed.
+    # Returns the number of bytes saved by deduplication.
+    def save(self, filename = None, progress = None, dedup = False):
         filename = _unicode(filename)
 
         if filename is None:
@@ -276,58 +455,161 @@ class RenPyArchive:
         if self.version != 2 and self.version != 3:
             raise ValueError('saving is only supported for version 2 and 3 archives')
 
-        self.verbose_print('Rebuilding archive index...')
-        # Fill our own files structure with the files added or changed in this session.
-        files = self.files
-        # First, read files from the current archive into our files structure.
-        for file in list(self.indexes.keys()):
-            content = self.read(file)
-            # Remove from indexes array once read, add to our own array.
-            del self.indexes[file]
-            files[file] = content
-
         # Predict header length, we'll write that one last.
         offset = 0
         if self.version == 3:
             offset = 34
         elif self.version == 2:
             offset = 25
-        archive = open(filename, 'wb')
-        archive.seek(offset)
 
-        # Build our own indexes while writing files to the archive.
-        indexes = {}
-        self.verbose_print('Writing files to archive file...')
-        for file, content in files.items():
-            # Generate random padding, for whatever reason.
-            if self.padlength > 0:
-                padding = self.generate_padding()
-                archive.write(padding)
-                offset += len(padding)
-
-            archive.write(content)
-            # Update index.
+        # Write into a temporary file, as we may still be reading from the archive we're replacing.
+        temp_filename = filename + '.tmp'
+        archive = open(temp_filename, 'wb')
+        try:
+            archive.seek(offset)
+
+            # Only files sharing their size with another file can be duplicates.
+            size_counts = {}
+            if dedup:
+                for file in self.list():
+                    size = self.get_size(file)
+                    size_counts[size] = size_counts.get(size, 0) + 1
+            # (length, digest) -> offset of data already written
+            regions = {}
+            saved = 0
+
+            # Build our own indexes while streaming files into the archive.
+            indexes = {}
+            buffer = bytearray(self.CHUNK_SIZE)
+            self.verbose_print('Writing files to archive file...')
+            for file in self.list():
+                start = offset
+                # Generate random padding, for whatever reason.
+                if self.padlength > 0:
+                    padding = self.generate_padding()
+                    archive.write(padding)
+                    offset += len(padding)
+                offset = self.write_alignment(archive, offset)
+
+                data_offset = offset
+                if dedup and size_counts.get(self.get_size(file), 0) > 1:
+                    writer = HashingWriter(archive)
+                    length = self.extract_to(file, writer, buffer)
+                    region = (length, writer.hash.digest())
+                    if region in regions:
+                        # Same contents were written before: drop this copy and share that region.
+                        self.verbose_print('File {0} duplicates earlier data, sharing it...'.format(_printable(file)))
+                        archive.seek(start)
+                        archive.truncate()
+                        offset = start
+                        data_offset = regions[region]
+                        saved += length
+                    else:
+                        regions[region] = data_offset
+                        offset += length
+                else:
+                    length = self.extract_to(file, archive, buffer)
+                    offset += length
+
+                # Update index.
+                if self.version == 3:
+                    indexes[file] = [ (data_offset ^ self.key, length ^ self.key) ]
+                elif self.version == 2:
+                    indexes[file] = [ (data_offset, length) ]
+
+                if progress is not None:
+                    progress(file, length)
+
+            # Write the indexes.
+            self.verbose_print('Writing archive index to archive file...')
+            archive.write(codecs.encode(pickle.dumps(indexes, self.PICKLE_PROTOCOL), 'zlib'))
+            # Now write the header.
+            self.verbose_print('Writing header to archive file... (version = RPAv{0})'.format(self.version))
+            archive.seek(0)
             if self.version == 3:
-                indexes[file] = [ (offset ^ self.key, len(content) ^ self.key) ]
-            elif self.version == 2:
-                indexes[file] = [ (offset, len(content)) ]
-            offset += len(content)
-
-        # Write the indexes.
-        self.verbose_print('Writing archive index to archive file...')
-        archive.write(codecs.encode(pickle.dumps(indexes, self.PICKLE_PROTOCOL), 'zlib'))
-        # Now write the header.
-        self.verbose_print('Writing header to archive file... (version = RPAv{0})'.format(self.version))
-        archive.seek(0)
-        if self.version == 3:
-            archive.write(codecs.encode('{}{:016x} {:08x}\n'.format(self.RPA3_MAGIC, offset, self.key)))
-        else:
-            archive.write(codecs.encode('{}{:016x}\n'.format(self.RPA2_MAGIC, offset)))
-        # We're done, close it.
-        archive.close()
+                archive.write(codecs.encode('{}{:016x} {:08x}\n'.format(self.RPA3_MAGIC, offset, self.key)))
+            else:
+                archive.write(codecs.encode('{}{:016x}\n'.format(self.RPA2_MAGIC, offset)))
+            # We're done, close it.
+            archive.close()
+        except:
+            archive.close()
+            os.remove(temp_filename)
+            raise
+
+        os.replace(temp_filename, filename)
 
         # Reload the file in our inner database.
         self.load(filename)
+        return saved
+
+    # Append the files added in this session to the opened archive in place, without rewriting its existing entries.
+    # New data and a new index go after the end of the file; the header is only patched to point at the new index
+    # once both are on disk, so an interrupted append leaves the old header and index valid.
+    # If given, progress(filename, length) is called after each file is written.
+    def append(self, progress = None):
+        if self.handle is None:
+            raise ValueError('no archive opened for appending')
+        if self.version != 2 and self.version != 3:
+            raise ValueError('appending is only supported for version 2 and 3 archives')
+
+        # We patch the header in place, so it has to be the exact layout we would write ourselves.
+        self.handle.seek(0)
+        header_length = len(self.handle.readline())
+        if (self.version == 3 and header_length != 34) or (self.version == 2 and header_length != 25):
+            raise ValueError('the archive header has an unsupported layout for appending')
+
+        # Carry over the entries still in the archive, obfuscated again with its key.
+        indexes = {}
+        for file, parts in self.indexes.items():
+            if self.version == 3:
+                indexes[file] = [ (part[0] ^ self.key, part[1] ^ self.key) + tuple(part[2:]) for part in parts ]
+            else:
+                indexes[file] = parts
+
+        archive = open(self.file, 'r+b')
+        try:
+            archive.seek(0, os.SEEK_END)
+            offset = archive.tell()
+
+            buffer = bytearray(self.CHUNK_SIZE)
+            self.verbose_print('Appending files to archive file...')
+            for file in list(self.files.keys()) + list(self.sources.keys()):
+                if self.padlength > 0:
+                    padding = self.generate_padding()
+                    archive.write(padding)
+                    offset += len(padding)
+                offset = self.write_alignment(archive, offset)
+
+                length = self.extract_to(file, archive, buffer)
+                if self.version == 3:
+                    indexes[file] = [ (offset ^ self.key, length ^ self.key) ]
+                else:
+                    indexes[file] = [ (offset, length) ]
+                offset += length
+
+                if progress is not None:
+                    progress(file, length)
+
+            # Write the new index after the data and make sure both are on disk before pointing the header at it.
+            self.verbose_print('Writing archive index to archive file...')
+            archive.write(codecs.encode(pickle.dumps(indexes, self.PICKLE_PROTOCOL), 'zlib'))
+            archive.flush()
+            os.fsync(archive.fileno())
+
+            self.verbose_print('Patching header of archive file...')
+            archive.seek(0)
+            if self.version == 3:
+                archive.write(codecs.encode('{}{:016x} {:08x}\n'.format(self.RPA3_MAGIC, offset, self.key)))
+            else:
+                archive.write(codecs.encode('{}{:016x}\n'.format(self.RPA2_MAGIC, offset)))
+            archive.flush()
+            os.fsync(archive.fileno())
+        finally:
+            archive.close()
+
+        # Reload the file in our inner database.
+        self.load(self.file)
 
 if __name__ == "__main__":
     import argparse
@@ -351,6 +633,7 @@ if __name__ == "__main__":
 
     parser.add_argument('-k', '--key', metavar='KEY', help='The obfuscation key used for creating RPAv3 archives, in hexadecimal (default: 0xDEADBEEF).')
     parser.add_argument('-p', '--padding', metavar='COUNT', help='The maximum number of bytes of padding to add between files (default: 0).')
+    parser.add_argument('--align', metavar='BYTES', help='Start the data of every file on a multiple of BYTES, e.g. 4096 or 16384 (default: 0, packed).')
     parser.add_argument('-o', '--outfile', help='An alternative output archive file when appending to or deleting from archives, or output directory when extracting.')
 
     parser.add_argument('-h', '--help', action='help', help='Print this help and exit.')
@@ -376,6 +659,12 @@ if __name__ == "__main__":
     else:
         padding = 0
 
+    # Determine data alignment.
+    if 'align' in arguments and arguments.align is not None:
+        alignment = int(arguments.align)
+    else:
+        alignment = 0
+
     # Determine output file/directory and input archive
     if arguments.create:
         archive = None
@@ -396,7 +685,7 @@ if __name__ == "__main__":
         arguments.files = arguments.files[0]
 
     try:
-        archive = RenPyArchive(archive, padlength=padding, key=key, version=version, verbose=arguments.verbose)
+        archive = RenPyArchive(archive, padlength=padding, key=key, version=version, verbose=arguments.verbose, alignment=alignment)
     except IOError as e:
         print('Could not open archive file {0} for reading: {1}'.format(archive, e), file=sys.stderr)
         sys.exit(1)
@@ -417,8 +706,7 @@ if __name__ == "__main__":
                     add_file(outfile + os.sep + file + '=' + filename + os.sep + file)
             else:
                 try:
-                    with open(filename, 'rb') as file:
-                        archive.add(outfile, file.read())
+                    archive.add_file(outfile, filename)
                 except Exception as e:
                     print('Could not add file {0} to archive: {1}'.format(filename, e), file=sys.stderr)
 
@@ -465,14 +753,12 @@ if __name__ == "__main__":
                 outfile = filename
 
             try:
-                contents = archive.read(filename)
-
                 # Create output directory for file if not present.
                 if not os.path.exists(os.path.dirname(os.path.join(output, outfile))):
                     os.makedirs(os.path.dirname(os.path.join(output, outfile)))
 
                 with open(os.path.join(output, outfile), 'wb') as file:
-                    file.write(contents)
+                    archive.extract_to(filename, file)
             except Exception as e:
                 print('Could not extract file {0} from archive: {1}'.format(filename, e), file=sys.stderr)
     elif arguments.list:
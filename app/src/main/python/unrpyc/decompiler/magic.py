@@ -26,6 +26,7 @@ PY3 = sys.version_info >= (3, 0)
 PY2 = not PY3
 
 import types
+import copyreg
 import pickle
 import struct
 
@@ -46,7 +47,7 @@ __all__ = [
     "FakeModule", "FakePackage", "FakePackageLoader",
     "FakeClassType", "FakeClassFactory",
     "FakeClass", "FakeStrict", "FakeWarning", "FakeIgnore",
-    "FakeUnpicklingError", "FakeUnpickler", "SafeUnpickler",
+    "FakeUnpicklingError", "FakeUnpickler", "SafeUnpickler", "CSafeUnpickler",
     "SafePickler"
 ]
 
@@ -264,8 +265,8 @@ class FakeClassFactory(object):
             # generate a new class def which inherits from the default fake class
             klass = type(name, (self.default,), {"__module__": module})
 
-        self.class_cache[(module, name)] = klass
-        return klass
+        # setdefault keeps the first class if another thread created one meanwhile
+        return self.class_cache.setdefault((module, name), klass)
 
 # Fake module implementation
 
@@ -552,6 +553,41 @@ class SafeUnpickler(FakeUnpickler):
         else:
             return self.class_factory("extension_code_{0}".format(code), "copyreg")
 
+if PY3 and pickle.Unpickler is not pickle._Unpickler:
+    class CSafeUnpickler(pickle.Unpickler):
+        """
+        A :class:`SafeUnpickler` built on the C accelerated :class:`pickle.Unpickler`.
+
+        It resolves classes exactly like :class:`SafeUnpickler`, but the opcode loop runs
+        in C, which makes it several times faster on large pickles such as rpyc ASTs.
+        Fake classes are looked up in the class factory's ``class_cache`` first, the
+        memoised ``(module, name)`` table, so repeated names skip the factory entirely.
+
+        The C unpickler resolves extension codes itself instead of calling
+        :meth:`SafeUnpickler.get_extension`, so :func:`safe_loads` only uses it when
+        *use_copyreg* is True or the extension registry is empty, in which case any
+        extension code fails to load and the pure-Python unpickler is used instead.
+
+        This is ``None`` when the C accelerated unpickler is unavailable.
+        """
+        def __init__(self, file, class_factory=None, safe_modules=(),
+                     use_copyreg=False, encoding="bytes", errors="strict"):
+            super().__init__(file, fix_imports=False, encoding=encoding, errors=errors)
+            self.class_factory = class_factory or FakeClassFactory()
+            self.class_cache = self.class_factory.class_cache
+            self.safe_modules = set(safe_modules)
+            self.use_copyreg = use_copyreg
+
+        def find_class(self, module, name):
+            if module not in self.safe_modules:
+                klass = self.class_cache.get((module, name))
+                if klass is not None:
+                    return klass
+
+            return SafeUnpickler.find_class(self, module, name)
+else:
+    CSafeUnpickler = None
+
 class SafePickler(pickle.Pickler if PY2 else pickle._Pickler):
     """
     A pickler which can repickle object hierarchies containing objects created by SafeUnpickler.
@@ -644,7 +680,18 @@ def safe_loads(string, class_factory=None, safe_modules=(), use_copyreg=False,
     """
     Similar to :func:`safe_load`, but takes an 8-bit string (bytes in Python 3, str in Python 2)
     as its first argument instead of a binary :term:`file object`.
+
+    The C accelerated :class:`CSafeUnpickler` is tried first where available. If it fails
+    for any reason, the string is unpickled again with the pure-Python :class:`SafeUnpickler`,
+    which also reports the errors.
     """
+    if CSafeUnpickler is not None and (use_copyreg or not copyreg._extension_registry):
+        try:
+            return CSafeUnpickler(StringIO(string), class_factory, safe_modules, use_copyreg,
+                                  encoding=encoding, errors=errors).load()
+        except Exception:
+            pass
+
     return SafeUnpickler(StringIO(string), class_factory, safe_modules, use_copyreg,
                          encoding=encoding, errors=errors).load()
 
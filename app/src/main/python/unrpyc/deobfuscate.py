@@ -31,6 +31,8 @@
 # Then, there's 0 or more steps of decrypting the data in that slot. This ends up often
 # being layers of base64, string-escape, hex-encoding, zlib-compression, etc.
 # We handle this by just trying these by checking if they fit.
+# A game uses one obfuscation scheme for all of its files, so the extractor and decryptor
+# chain that worked last is remembered and tried first on the next file (see read_ast).
 
 import base64
 import struct
@@ -48,6 +50,8 @@ def extractor(f):
 
 # Decryptors are simple functions of (bytes, Counter) ->bytes
 # They return None if they fail. If they return their input they're also considered to have failed.
+# The Counter is meant for checking which bytes occur. When a remembered strategy is replayed,
+# it holds every distinct byte once, as counting every byte costs more than the decryption.
 DECRYPTORS = []
 def decryptor(f):
     DECRYPTORS.append(f)
@@ -276,9 +280,38 @@ def assert_is_normal_rpyc(f):
         return uncompressed
 
 
+# (extractor, tuple of decryptors) that last deobfuscated a file, or None
+_strategy = None
+
+
+def reset_strategy():
+    """
+    Forget the remembered strategy, before working on files of another game.
+    """
+    global _strategy
+    _strategy = None
+
+
 def read_ast(f, context):
+    """
+    Extract and decrypt the AST from a possibly obfuscated rpyc file object.
+
+    The remembered strategy is replayed first. If it fails, the extractors are tried in order
+    and the first one whose data can be decrypted and unpickled wins and is remembered.
+    """
+    global _strategy
     diagnosis = ["Attempting to deobfuscate file:"]
 
+    strategy = _strategy
+    if strategy is not None:
+        stmts = try_strategy(f, strategy)
+        if stmts is not None:
+            extractor, decryptors = strategy
+            context.log(f'Deobfuscated file with remembered strategy {extractor.__name__}'
+                        + ''.join(f', {decryptor.__name__}' for decryptor in decryptors))
+            return stmts
+        diagnosis.append("remembered strategy failed. Trying all options")
+
     raw_datas = set()
 
     for extractor in EXTRACTORS:
@@ -288,34 +321,61 @@ def read_ast(f, context):
             # inside f-string braces "\" are not allowed before py3.12, so we use chr() till
             # this our minimum py is
             diagnosis.append(f'strategy {extractor.__name__} failed: {chr(10).join(e.args)}')
-        else:
-            diagnosis.append(f'strategy {extractor.__name__} success')
-            raw_datas.add(data)
-
-    if not raw_datas:
-        diagnosis.append("All strategies failed. Unable to extract data")
-        raise ValueError("\n".join(diagnosis))
+            continue
 
-    if len(raw_datas) != 1:
-        diagnosis.append("Strategies produced different results. Trying all options")
+        diagnosis.append(f'strategy {extractor.__name__} success')
+        if data in raw_datas:
+            continue
+        raw_datas.add(data)
 
-    data = None
-    for raw_data in raw_datas:
         try:
-            data, stmts, d = try_decrypt_section(raw_data)
+            _, stmts, d, decryptors = _decrypt_section(data)
         except ValueError as e:
             diagnosis.append("\n".join(e.args))
         else:
             diagnosis.extend(d)
             context.log("\n".join(diagnosis))
+            _strategy = (extractor, decryptors)
             return stmts
 
-    diagnosis.append("All strategies failed. Unable to deobfuscate data")
+    if not raw_datas:
+        diagnosis.append("All strategies failed. Unable to extract data")
+    else:
+        diagnosis.append("All strategies failed. Unable to deobfuscate data")
     raise ValueError("\n".join(diagnosis))
 
 
+def try_strategy(f, strategy):
+    """
+    Extract slot 1 with the strategy's extractor and run its decryptors in order.
+    Returns the statements, or None if any step fails or the result does not unpickle.
+    """
+    extractor, decryptors = strategy
+    try:
+        data = extractor(f, 1)
+    except ValueError:
+        return None
+
+    for decryptor in decryptors:
+        data = decryptor(data, Counter(set(data)))
+        if data is None:
+            return None
+
+    try:
+        _, stmts = pickle_safe_loads(data)
+    except Exception:
+        return None
+    return stmts
+
+
 def try_decrypt_section(raw_data):
+    data, stmts, diagnosis, _ = _decrypt_section(raw_data)
+    return data, stmts, diagnosis
+
+
+def _decrypt_section(raw_data):
     diagnosis = []
+    decryptors = []
 
     layers = 0
     while layers < 10:
@@ -325,7 +385,7 @@ def try_decrypt_section(raw_data):
         except Exception:
             pass
         else:
-            return data, stmts, diagnosis
+            return data, stmts, diagnosis, tuple(decryptors)
 
         layers += 1
         count = Counter(raw_data)
@@ -336,6 +396,7 @@ def try_decrypt_section(raw_data):
                 continue
             else:
                 raw_data = newdata
+                decryptors.append(decryptor)
                 diagnosis.append(f'performed a round of {decryptor.__name__}')
                 break
         else:
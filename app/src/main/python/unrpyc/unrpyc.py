@@ -28,6 +28,7 @@ __url__ = "https://github.com/CensoredUsername/unrpyc"
 
 import argparse
 import glob
+import os
 import struct
 import sys
 import traceback
@@ -156,15 +157,23 @@ def read_ast_from_file(in_file, context):
 def get_ast(in_file, try_harder, context):
     """
     Opens the rpyc file at path in_file to load the contained AST.
+    in_file may also be a seekable binary file object, such as an io.BytesIO holding an rpyc
+    file read from an archive, which is read from its start and not closed.
     If try_harder is True, an attempt will be made to work around obfuscation techniques.
     Else, it is loaded as a normal rpyc file.
     """
+    if hasattr(in_file, 'read'):
+        in_file.seek(0)
+        return _read_ast(in_file, try_harder, context)
+
     with in_file.open('rb') as in_file:
-        if try_harder:
-            ast = deobfuscate.read_ast(in_file, context)
-        else:
-            ast = read_ast_from_file(in_file, context)
-    return ast
+        return _read_ast(in_file, try_harder, context)
+
+
+def _read_ast(in_file, try_harder, context):
+    if try_harder:
+        return deobfuscate.read_ast(in_file, context)
+    return read_ast_from_file(in_file, context)
 
 
 def decompile_rpyc(input_filename, context, overwrite=False, try_harder=False, dump=False,
@@ -188,15 +197,32 @@ def decompile_rpyc(input_filename, context, overwrite=False, try_harder=False, d
 
     context.log(f'Decompiling {input_filename} to {out_filename.name} ...')
     ast = get_ast(input_filename, try_harder, context)
+    write_ast(ast, out_filename, context, dump=dump, comparable=comparable, no_pyexpr=no_pyexpr,
+              translator=translator, init_offset=init_offset, sl_custom_names=sl_custom_names)
 
-    with out_filename.open('w', encoding='utf-8') as out_file:
-        if dump:
-            astdump.pprint(out_file, ast, comparable=comparable, no_pyexpr=no_pyexpr)
-        else:
-            options = decompiler.Options(log=context.log_contents, translator=translator,
-                                         init_offset=init_offset, sl_custom_names=sl_custom_names)
 
-            decompiler.pprint(out_file, ast, options)
+def write_ast(ast, out_filename, context, dump=False, comparable=False, no_pyexpr=False,
+              translator=None, init_offset=False, sl_custom_names=None):
+    """
+    Writes a loaded AST to out_filename, decompiled or (with dump) pretty printed.
+    The output goes to a temporary file first, so a failed decompilation never leaves a
+    truncated file in place of an existing one.
+    """
+    temp_filename = out_filename.with_name(out_filename.name + '.tmp')
+    try:
+        with temp_filename.open('w', encoding='utf-8') as out_file:
+            if dump:
+                astdump.pprint(out_file, ast, comparable=comparable, no_pyexpr=no_pyexpr)
+            else:
+                options = decompiler.Options(log=context.log_contents, translator=translator,
+                                             init_offset=init_offset, sl_custom_names=sl_custom_names)
+
+                decompiler.pprint(out_file, ast, options)
+
+        os.replace(temp_filename, out_filename)
+    except BaseException:
+        temp_filename.unlink(missing_ok=True)
+        raise
 
     context.set_state('ok')
 
@@ -0,0 +1,135 @@
+#!/usr/bin/env python3
+"""
+Compare random-entry read latency of packed and page-aligned RPA archives
+
+Builds the same set of files into a packed, a 4 KiB aligned and a 16 KiB aligned
+archive with rpatool, then reads random entries from each through pread and
+through an mmap of the archive, reporting per-read latency and pages touched.
+
+Usage:
+    python3 tools/bench_rpa_alignment.py [--files N] [--reads N] [--cold] [--source DIR]
+
+--cold drops each archive from the page cache before every read (Linux), which
+is closest to a first read on a device; without it reads come from the cache.
+"""
+
+import argparse
+import mmap
+import os
+import random
+import shutil
+import statistics
+import sys
+import tempfile
+import time
+
+sys.path.insert(0, os.path.join(os.path.dirname(os.path.abspath(__file__)), '..', 'app', 'src', 'main', 'python'))
+from rpatool import RenPyArchive  # noqa: E402
+
+ALIGNMENTS = [0, 4096, 16384]
+
+
+def make_source(directory, count, rng):
+    """Write count files with sizes typical of game assets (small scripts to large images)"""
+    for i in range(count):
+        size = int(rng.lognormvariate(10.5, 1.2))  # median ~36 KiB
+        with open(os.path.join(directory, 'file{:05d}.bin'.format(i)), 'wb') as f:
+            f.write(os.urandom(size))
+
+
+def build(source, output, alignment):
+    archive = RenPyArchive(alignment=alignment)
+    for name in sorted(os.listdir(source)):
+        archive.add_file(name, os.path.join(source, name))
+    archive.save(output)
+
+
+def entries(path):
+    archive = RenPyArchive(path)
+    result = []
+    for name in sorted(archive.list()):
+        entry = archive.get_entry(name)
+        result.append((entry[0], entry[1]))
+    archive.handle.close()
+    return result
+
+
+def drop_cache(fd):
+    if hasattr(os, 'posix_fadvise'):
+        os.posix_fadvise(fd, 0, 0, os.POSIX_FADV_DONTNEED)
+
+
+def bench(path, picks, cold, page_size):
+    results = {}
+    fd = os.open(path, os.O_RDONLY)
+    try:
+        # pread: one positional read per entry
+        times = []
+        for offset, length in picks:
+            if cold:
+                drop_cache(fd)
+            start = time.perf_counter()
+            os.pread(fd, length, offset)
+            times.append(time.perf_counter() - start)
+        results['pread'] = times
+
+        # mmap: touch every page of the entry through a mapping of the whole archive
+        mapped = mmap.mmap(fd, 0, access=mmap.ACCESS_READ)
+        times = []
+        for offset, length in picks:
+            if cold:
+                drop_cache(fd)
+            start = time.perf_counter()
+            bytes(mapped[offset:offset + length])
+            times.append(time.perf_counter() - start)
+        mapped.close()
+        results['mmap'] = times
+    finally:
+        os.close(fd)
+
+    pages = [(offset + length - 1) // page_size - offset // page_size + 1 for offset, length in picks if length]
+    return results, sum(pages) / float(len(pages))
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.strip().splitlines()[0])
+    parser.add_argument('--files', type=int, default=2000, help='files to generate (default: 2000)')
+    parser.add_argument('--reads', type=int, default=2000, help='random entry reads per archive (default: 2000)')
+    parser.add_argument('--cold', action='store_true', help='drop the page cache before every read')
+    parser.add_argument('--source', help='use the files of this directory instead of generated ones')
+    parser.add_argument('--page-size', type=int, default=16384, help='page size for the pages-touched column (default: 16384)')
+    parser.add_argument('--seed', type=int, default=1)
+    args = parser.parse_args()
+
+    rng = random.Random(args.seed)
+    work = tempfile.mkdtemp(prefix='rpa_align_bench_')
+    try:
+        source = args.source
+        if source is None:
+            source = os.path.join(work, 'src')
+            os.mkdir(source)
+            make_source(source, args.files, rng)
+
+        print('{:>8} {:>10} {:>6} {:>12} {:>12} {:>12} {:>12}'.format(
+            'align', 'size MiB', 'pages', 'pread p50us', 'pread p95us', 'mmap p50us', 'mmap p95us'))
+        for alignment in ALIGNMENTS:
+            path = os.path.join(work, 'archive_{}.rpa'.format(alignment))
+            build(source, path, alignment)
+            index = entries(path)
+            picks = [index[rng.randrange(len(index))] for _ in range(args.reads)]
+            results, pages = bench(path, picks, args.cold, args.page_size)
+
+            def pct(values, q):
+                ordered = sorted(values)
+                return ordered[min(len(ordered) - 1, int(q * len(ordered)))] * 1e6
+
+            print('{:>8} {:>10.1f} {:>6.2f} {:>12.1f} {:>12.1f} {:>12.1f} {:>12.1f}'.format(
+                alignment or 'packed', os.path.getsize(path) / 1048576.0, pages,
+                statistics.median(results['pread']) * 1e6, pct(results['pread'], 0.95),
+                statistics.median(results['mmap']) * 1e6, pct(results['mmap'], 0.95)))
+    finally:
+        shutil.rmtree(work, ignore_errors=True)
+
+
+if __name__ == '__main__':
+    main()